@@ -24,8 +24,10 @@ import com.example.android.architecture.blueprints.todoapp.tasks.Presenter;
 import com.example.android.architecture.blueprints.todoapp.tasks.TasksModel;
 import com.example.android.architecture.blueprints.todoapp.tasks.TasksModule;
 import com.example.android.architecture.blueprints.todoapp.tasks.ui.TasksFragment;
+import com.pij.horrocks.Concurrency;
 import com.pij.horrocks.Configuration;
 import com.pij.horrocks.Engine;
+import com.pij.horrocks.LevelLogger;
 import com.pij.horrocks.MemoryStorage;
 import com.pij.horrocks.MultipleReducerCreator;
 import com.pij.horrocks.SingleReducerCreator;
@@ -79,11 +81,16 @@ public final class FeaturedPresenter implements Presenter {
         clearCompletedTasks = new MultipleReducerCreator<>(new ClearCompletedTasksFeature(logger, tasksRepository), logger);
         activateTask = new MultipleReducerCreator<>(new ActivateTaskFeature(logger, tasksRepository), logger);
         completeTask = new MultipleReducerCreator<>(new CompleteTaskFeature(logger, tasksRepository), logger);
-        loadTasks = new MultipleReducerCreator<>(new LoadTasksFeature(logger, tasksRepository), logger);
+        // A refresh supersedes the load in progress.
+        loadTasks = MultipleReducerCreator.builder(new LoadTasksFeature(logger, tasksRepository))
+                .logger(LevelLogger.verbose(logger))
+                .concurrency(Concurrency.switchLatest())
+                .build();
         this.engine = engine;
         engineConfiguration = Configuration.<ViewState, TasksModel>builder()
                 .store(new MemoryStorage<>(initialState()))
                 .transientResetter(this::resetTransientState)
+                .transientDetector(ViewState::hasTransients)
                 .stateToModel(this::convert)
                 .creators(asList(
                         indicateTaskSaved,
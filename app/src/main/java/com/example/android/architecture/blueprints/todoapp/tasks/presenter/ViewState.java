@@ -48,6 +48,20 @@ abstract class ViewState {
 
     public abstract boolean showLoadingTasksError();
 
+    /**
+     * Whether any of the properties reset by {@link FeaturedPresenter}'s transient resetter is set.
+     */
+    boolean hasTransients() {
+        return showSuccessfullySavedMessage()
+                || showAddTask()
+                || showTaskDetails() != null
+                || showCompletedTasksCleared()
+                || showTaskMarkedActive()
+                || showTaskMarkedComplete()
+                || showTaskMarkedActiveFailed() != null
+                || showLoadingTasksError();
+    }
+
     public abstract Builder toBuilder();
 
     @AutoValue.Builder
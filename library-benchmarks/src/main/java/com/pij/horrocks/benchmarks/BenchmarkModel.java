@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.benchmarks;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+
+/**
+ * @author PierreJean
+ */
+@AutoValue
+abstract class BenchmarkModel {
+
+    static Builder builder() {
+        return new AutoValue_BenchmarkModel.Builder();
+    }
+
+    abstract List<String> items();
+
+    abstract int completedCount();
+
+    abstract String title();
+
+    abstract boolean inProgress();
+
+    abstract boolean showMessage();
+
+    abstract boolean showItemDetails();
+
+    @AutoValue.Builder
+    abstract static class Builder {
+
+        abstract Builder items(List<String> items);
+
+        abstract Builder completedCount(int completedCount);
+
+        abstract Builder title(String title);
+
+        abstract Builder inProgress(boolean inProgress);
+
+        abstract Builder showMessage(boolean showMessage);
+
+        abstract Builder showItemDetails(boolean showItemDetails);
+
+        abstract BenchmarkModel build();
+    }
+}
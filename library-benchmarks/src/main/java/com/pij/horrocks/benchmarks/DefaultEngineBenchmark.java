@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.benchmarks;
+
+import com.pij.horrocks.Configuration;
+import com.pij.horrocks.DefaultEngine;
+import com.pij.horrocks.LevelLogger;
+import com.pij.horrocks.MemoryStorage;
+import com.pij.horrocks.ReducerCreator;
+import com.pij.horrocks.SingleReducerCreator;
+import com.pij.horrocks.StateConverter;
+import com.pij.horrocks.TransientCleaner;
+import com.pij.horrocks.TriggeredReducerCreator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Drives {@link DefaultEngine#runWith(Configuration)} with a varying number of {@link ReducerCreator}s.
+ * <p>The whole pipeline is synchronous: when {@link TriggeredReducerCreator#trigger(Object)} returns, the model
+ * produced by the event has been handed to the view. So each benchmark operation is one event going through
+ * reduction, transient cleaning, filtering, storage, conversion and emission, i.e.:<ul>
+ * <li>{@link #reducerThroughput()} measures reducers per second,</li>
+ * <li>{@link #eventToModelLatency()} measures the event-to-model latency distribution (p50, p99...),</li>
+ * <li>the GC profiler ({@code -prof gc}) reports {@code gc.alloc.rate.norm}, the bytes allocated per reducer.</li>
+ * </ul>
+ * The cleaner and converter parameters make the cost of each stage visible by difference.</p>
+ *
+ * @author PierreJean
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DefaultEngineBenchmark {
+
+    private static final int ITEM_COUNT = 100;
+
+    @Param({"1", "10", "100"})
+    int creatorCount;
+
+    @Param
+    Cleaner cleaner;
+
+    @Param
+    Converter converter;
+
+    private List<TriggeredReducerCreator<Integer, BenchmarkState>> creators;
+    private Disposable run;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole view) {
+        creators = new ArrayList<>(creatorCount);
+        for (int i = 0; i < creatorCount; i++) {
+            creators.add(new SingleReducerCreator<>(
+                    event -> current -> current.toBuilder()
+                            .counter(current.counter() + event)
+                            .showMessage(true)
+                            .build(),
+                    LevelLogger.OFF));
+        }
+        Configuration<BenchmarkState, Object> configuration = Configuration.<BenchmarkState, Object>builder()
+                .store(new MemoryStorage<>(initialState()))
+                .creators(Collections.unmodifiableList(creators))
+                .transientResetter(cleaner.cleaner)
+                .stateToModel(converter.converter)
+                .build();
+        run = new DefaultEngine<BenchmarkState, Object>(LevelLogger.OFF).runWith(configuration).subscribe(view::consume);
+        next = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        run.dispose();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void reducerThroughput() {
+        triggerNext();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void eventToModelLatency() {
+        triggerNext();
+    }
+
+    /**
+     * Round-robins the events between creators, so that all of them contribute to the merge.
+     */
+    private void triggerNext() {
+        creators.get(next).trigger(1);
+        next = next + 1 == creatorCount ? 0 : next + 1;
+    }
+
+    private static BenchmarkState initialState() {
+        List<String> items = new ArrayList<>(ITEM_COUNT);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            items.add("item " + i);
+        }
+        return BenchmarkState.builder()
+                .counter(0)
+                .items(Collections.unmodifiableList(items))
+                .inProgress(false)
+                .showMessage(false)
+                .openItem("")
+                .build();
+    }
+
+    public enum Cleaner {
+        /**
+         * The library's default: leaves the state unchanged.
+         */
+        IDENTITY(state -> state),
+        /**
+         * What presenters usually do: a full copy of the state.
+         */
+        TO_BUILDER(state -> state.toBuilder()
+                .showMessage(false)
+                .openItem("")
+                .build());
+
+        private final TransientCleaner<BenchmarkState> cleaner;
+
+        Cleaner(TransientCleaner<BenchmarkState> cleaner) {
+            this.cleaner = cleaner;
+        }
+    }
+
+    public enum Converter {
+        /**
+         * The state is the model.
+         */
+        IDENTITY(state -> state),
+        /**
+         * A conversion that scans the list and builds a distinct model object.
+         */
+        MODEL(state -> {
+            int completed = 0;
+            for (String item : state.items()) {
+                if (item.hashCode() % 2 == 0) completed++;
+            }
+            return BenchmarkModel.builder()
+                    .items(state.items())
+                    .completedCount(completed)
+                    .title(state.counter() + " updates")
+                    .inProgress(state.inProgress())
+                    .showMessage(state.showMessage())
+                    .showItemDetails(!state.openItem().isEmpty())
+                    .build();
+        });
+
+        private final StateConverter<BenchmarkState, Object> converter;
+
+        Converter(StateConverter<BenchmarkState, Object> converter) {
+            this.converter = converter;
+        }
+    }
+}
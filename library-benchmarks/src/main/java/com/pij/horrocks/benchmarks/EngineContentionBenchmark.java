@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.benchmarks;
+
+import com.pij.horrocks.Configuration;
+import com.pij.horrocks.DefaultEngine;
+import com.pij.horrocks.Engine;
+import com.pij.horrocks.LevelLogger;
+import com.pij.horrocks.MemoryStorage;
+import com.pij.horrocks.MpscEngine;
+import com.pij.horrocks.SingleReducerCreator;
+import com.pij.horrocks.TriggeredReducerCreator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Many threads emitting reducers into the same engine, each through its own creator. Compares the Rx merge of
+ * {@link DefaultEngine} with the lock-free queue of {@link MpscEngine}.
+ *
+ * @author PierreJean
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EngineContentionBenchmark {
+
+    /**
+     * More than the benchmark threads, so that creators are idle as well.
+     */
+    private static final int CREATOR_COUNT = 100;
+
+    /**
+     * How far the benchmark threads may run ahead of the view. Without a bound, an engine that queues reducers would
+     * just accumulate them and the benchmark would measure the queue, not the reduction.
+     */
+    private static final long MAX_IN_FLIGHT = 1024;
+
+    @Param
+    EngineType engine;
+
+    private final AtomicInteger nextCreator = new AtomicInteger();
+    private final AtomicLong triggered = new AtomicLong();
+    private final AtomicLong viewed = new AtomicLong();
+    private List<TriggeredReducerCreator<Integer, Integer>> creators;
+    private Disposable run;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole view) {
+        creators = new ArrayList<>(CREATOR_COUNT);
+        for (int i = 0; i < CREATOR_COUNT; i++) {
+            creators.add(new SingleReducerCreator<>(event -> current -> current + event, LevelLogger.OFF));
+        }
+        Configuration<Integer, Integer> configuration = Configuration.<Integer, Integer>builder()
+                .store(new MemoryStorage<>(0))
+                .creators(Collections.unmodifiableList(creators))
+                .stateToModel(state -> state)
+                .build();
+        triggered.set(0);
+        viewed.set(-1); // The initial model is not the result of a trigger.
+        run = engine.create().runWith(configuration).subscribe(model -> {
+            view.consume(model);
+            viewed.incrementAndGet();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        run.dispose();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void concurrentReducers(ThreadCreator thread) {
+        thread.creator.trigger(1);
+        long sent = triggered.incrementAndGet();
+        while (sent - viewed.get() > MAX_IN_FLIGHT) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * By default, creators must be triggered from one thread at a time: each benchmark thread gets its own.
+     */
+    @State(Scope.Thread)
+    public static class ThreadCreator {
+
+        TriggeredReducerCreator<Integer, Integer> creator;
+
+        @Setup(Level.Trial)
+        public void setUp(EngineContentionBenchmark benchmark) {
+            creator = benchmark.creators.get(benchmark.nextCreator.getAndIncrement() % CREATOR_COUNT);
+        }
+    }
+
+    public enum EngineType {
+        DEFAULT {
+            @Override
+            Engine<Integer, Integer> create() {
+                return new DefaultEngine<>(LevelLogger.OFF);
+            }
+        },
+        MPSC {
+            @Override
+            Engine<Integer, Integer> create() {
+                return new MpscEngine<>(LevelLogger.OFF);
+            }
+        };
+
+        abstract Engine<Integer, Integer> create();
+    }
+}
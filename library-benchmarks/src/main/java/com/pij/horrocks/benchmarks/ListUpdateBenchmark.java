@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.benchmarks;
+
+import com.pij.horrocks.PersistentVector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a reducer pays to update a single element of a list property: a copy of an unmodifiable list, as presenters
+ * usually do, against an update of a {@link PersistentVector}. Run with {@code -prof gc} for the allocations.
+ *
+ * @author PierreJean
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ListUpdateBenchmark {
+
+    @Param({"100", "50000"})
+    int size;
+
+    private List<Integer> copied;
+    private PersistentVector<Integer> persistent;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Integer> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(i);
+        }
+        copied = Collections.unmodifiableList(items);
+        persistent = PersistentVector.of(items);
+        next = 0;
+    }
+
+    @Benchmark
+    public List<Integer> copyAndSet() {
+        List<Integer> result = new ArrayList<>(copied);
+        result.set(nextIndex(), -1);
+        return Collections.unmodifiableList(result);
+    }
+
+    @Benchmark
+    public List<Integer> persistentWith() {
+        return persistent.with(nextIndex(), -1);
+    }
+
+    private int nextIndex() {
+        next = next + 1 == size ? 0 : next + 1;
+        return next;
+    }
+}
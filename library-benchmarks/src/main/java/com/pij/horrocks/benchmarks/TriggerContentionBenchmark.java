@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.benchmarks;
+
+import com.pij.horrocks.LevelLogger;
+import com.pij.horrocks.Reducer;
+import com.pij.horrocks.SingleReducerCreator;
+import com.pij.horrocks.Triggering;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Many threads triggering the same creator. Compares the {@link Triggering} strategies that let a creator be triggered
+ * concurrently with a lock around a creator using the default, direct, triggering.
+ *
+ * @author PierreJean
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TriggerContentionBenchmark {
+
+    /**
+     * How far the benchmark threads may run ahead of the delivery. Without a bound, the queues of the lock-free
+     * triggers would grow until the memory runs out.
+     */
+    private static final long MAX_IN_FLIGHT = 1024;
+
+    @Param
+    TriggerType trigger;
+
+    private final AtomicLong triggered = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private Trigger target;
+    private Disposable subscription;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole view) {
+        triggered.set(0);
+        delivered.set(0);
+        target = trigger.create(reducer -> {
+            view.consume(reducer);
+            delivered.incrementAndGet();
+        });
+        subscription = target.subscription;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subscription.dispose();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void concurrentTriggers() {
+        target.trigger(1);
+        long sent = triggered.incrementAndGet();
+        while (sent - delivered.get() > MAX_IN_FLIGHT) {
+            Thread.yield();
+        }
+    }
+
+    private abstract static class Trigger {
+        Disposable subscription;
+
+        abstract void trigger(Integer event);
+    }
+
+    public enum TriggerType {
+        /**
+         * What callers do with the default triggering.
+         */
+        SYNCHRONIZED {
+            @Override
+            Trigger create(Consumer<Reducer<Integer>> view) {
+                SingleReducerCreator<Integer, Integer> creator = creator(Triggering.direct());
+                Trigger result = new Trigger() {
+                    @Override
+                    synchronized void trigger(Integer event) {
+                        creator.trigger(event);
+                    }
+                };
+                result.subscription = creator.reducers().subscribe(view);
+                return result;
+            }
+        },
+        SERIALIZED {
+            @Override
+            Trigger create(Consumer<Reducer<Integer>> view) {
+                return unlocked(creator(Triggering.serialized()), view);
+            }
+        },
+        LOCK_FREE {
+            @Override
+            Trigger create(Consumer<Reducer<Integer>> view) {
+                return unlocked(creator(Triggering.lockFree()), view);
+            }
+        };
+
+        private static SingleReducerCreator<Integer, Integer> creator(Triggering triggering) {
+            return new SingleReducerCreator<>(event -> current -> current + event, LevelLogger.OFF, triggering);
+        }
+
+        private static Trigger unlocked(SingleReducerCreator<Integer, Integer> creator, Consumer<Reducer<Integer>> view) {
+            Trigger result = new Trigger() {
+                @Override
+                void trigger(Integer event) {
+                    creator.trigger(event);
+                }
+            };
+            result.subscription = creator.reducers().subscribe(view);
+            return result;
+        }
+
+        abstract Trigger create(Consumer<Reducer<Integer>> view);
+    }
+}
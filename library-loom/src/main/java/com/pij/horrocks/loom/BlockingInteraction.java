@@ -0,0 +1,30 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.loom;
+
+import android.support.annotation.NonNull;
+
+import com.pij.horrocks.Reducer;
+
+/**
+ * The blocking counterpart of {@link com.pij.horrocks.Interaction}: it may wait on I/O, a lock or a callback, and
+ * throw whatever the API it calls throws. Run it with a {@link VirtualThreadInteraction}.
+ *
+ * @author PierreJean
+ */
+public interface BlockingInteraction<E, S> {
+    @NonNull
+    Reducer<S> process(@NonNull E event) throws Exception;
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.loom;
+
+import android.support.annotation.NonNull;
+
+import com.pij.horrocks.AsyncInteraction;
+import com.pij.horrocks.ErrorReducerFactory;
+import com.pij.horrocks.Reducer;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * Adapts a {@link BlockingInteraction} to an {@link AsyncInteraction}: each event is processed on its own virtual
+ * thread, so a {@link com.pij.horrocks.MultipleReducerCreator} can process as many events at once as it receives.
+ * A failure of the interaction is turned into a reducer by the {@link ErrorReducerFactory} given at construction,
+ * so the creator carries on processing the next events.
+ *
+ * @author PierreJean
+ */
+public final class VirtualThreadInteraction<E, S> implements AsyncInteraction<E, S> {
+
+    private final BlockingInteraction<E, S> interaction;
+    private final ErrorReducerFactory<S> errorReducerFactory;
+    private final Scheduler scheduler;
+
+    /**
+     * Runs on the {@link VirtualThreadScheduler#shared()} scheduler.
+     */
+    public VirtualThreadInteraction(@NonNull BlockingInteraction<E, S> interaction,
+                                    @NonNull ErrorReducerFactory<S> errorReducerFactory) {
+        this(interaction, errorReducerFactory, VirtualThreadScheduler.shared());
+    }
+
+    public VirtualThreadInteraction(@NonNull BlockingInteraction<E, S> interaction,
+                                    @NonNull ErrorReducerFactory<S> errorReducerFactory,
+                                    @NonNull Scheduler scheduler) {
+        this.interaction = interaction;
+        this.errorReducerFactory = errorReducerFactory;
+        this.scheduler = scheduler;
+    }
+
+    @NonNull
+    @Override
+    public Observable<Reducer<S>> process(@NonNull E event) {
+        return Observable.<Reducer<S>>create(emitter -> {
+            Reducer<S> reducer;
+            try {
+                reducer = interaction.process(event);
+            } catch (Throwable e) {
+                // Once disposed, the interruption of the blocking call is expected and has nowhere to go.
+                if (emitter.isDisposed()) return;
+                reducer = errorReducerFactory.create(e);
+            }
+            emitter.onNext(reducer);
+            emitter.onComplete();
+        }).subscribeOn(scheduler);
+    }
+}
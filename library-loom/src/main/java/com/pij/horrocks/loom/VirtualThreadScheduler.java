@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.loom;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Schedulers that run every task on a new virtual thread. A task that blocks only parks its virtual thread, so
+ * thousands of blocking tasks can run at once without sizing a thread pool.
+ * <p>Workers are interruptible: disposing a task interrupts its virtual thread, which cancels a blocking call.</p>
+ *
+ * @author PierreJean
+ */
+public final class VirtualThreadScheduler {
+
+    private static final class Shared {
+        static final Scheduler INSTANCE = create("horrocks-virtual-");
+    }
+
+    private VirtualThreadScheduler() {
+    }
+
+    /**
+     * The scheduler used by default. Its threads are named <code>horrocks-virtual-&lt;n&gt;</code>.
+     */
+    @NonNull
+    public static Scheduler shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * A new scheduler, with its own executor, whose threads are named <code>namePrefix</code> followed by a counter.
+     */
+    @NonNull
+    public static Scheduler create(@NonNull String namePrefix) {
+        ThreadFactory factory = Thread.ofVirtual().name(namePrefix, 0).factory();
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(factory);
+        return Schedulers.from(executor, true);
+    }
+}
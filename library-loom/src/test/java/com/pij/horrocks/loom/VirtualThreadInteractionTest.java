@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks.loom;
+
+import com.pij.horrocks.MultipleReducerCreator;
+import com.pij.horrocks.Reducer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author PierreJean
+ */
+public class VirtualThreadInteractionTest {
+
+    @Test
+    public void processesTheEventOnAVirtualThread() {
+        VirtualThreadInteraction<String, Boolean> sut = new VirtualThreadInteraction<>(event -> {
+            boolean virtual = Thread.currentThread().isVirtual();
+            return current -> virtual;
+        }, e -> current -> current);
+
+        Reducer<Boolean> reducer = sut.process("event").blockingFirst();
+
+        assertEquals(true, reducer.reduce(false));
+    }
+
+    @Test
+    public void processesThousandsOfBlockingEventsAtOnce() throws InterruptedException {
+        int count = 5_000;
+        CountDownLatch allStarted = new CountDownLatch(count);
+        MultipleReducerCreator<Integer, Integer> creator = new MultipleReducerCreator<>(
+                new VirtualThreadInteraction<>(event -> {
+                    allStarted.countDown();
+                    // Only returns if all events are being processed at the same time.
+                    allStarted.await();
+                    return current -> current + event;
+                }, e -> current -> current));
+        TestObserver<Reducer<Integer>> observer = creator.reducers().test();
+
+        for (int i = 0; i < count; i++) {
+            creator.trigger(1);
+        }
+
+        observer.awaitCount(count).assertValueCount(count);
+    }
+
+    @Test
+    public void turnsTheFailureOfTheInteractionIntoAReducer() {
+        IOException failure = new IOException("Expected");
+        VirtualThreadInteraction<String, String> sut = new VirtualThreadInteraction<>(event -> {
+            throw failure;
+        }, e -> current -> e.getMessage());
+
+        Reducer<String> reducer = sut.process("event").blockingFirst();
+
+        assertEquals("Expected", reducer.reduce("initial"));
+    }
+
+    @Test
+    public void keepsProcessingEventsAfterAFailure() {
+        MultipleReducerCreator<Boolean, String> creator = new MultipleReducerCreator<>(
+                new VirtualThreadInteraction<>(event -> {
+                    if (event) throw new IOException("Expected");
+                    return current -> "ok";
+                }, e -> current -> "failed"));
+        TestObserver<Reducer<String>> observer = creator.reducers().test();
+
+        creator.trigger(true);
+        observer.awaitCount(1);
+        creator.trigger(false);
+
+        observer.awaitCount(2).assertNoErrors().assertValueCount(2);
+    }
+
+    @Test
+    public void disposingInterruptsTheBlockingCall() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        VirtualThreadInteraction<String, String> sut = new VirtualThreadInteraction<>(event -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return current -> current;
+        }, e -> current -> current);
+        TestObserver<Reducer<String>> observer = sut.process("event").test();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        observer.dispose();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import io.reactivex.Flowable;
+
+/**
+ * An engine whose models are emitted only as fast as the view requests them. The demand of the view propagates
+ * back through the reduction loop up to the {@link ReducerCreator}s, where the {@link Overflow} strategy configured
+ * for each of them decides what happens to the reducers that cannot be applied yet.
+ *
+ * @author PierreJean
+ */
+public interface BackpressureEngine<S, M> {
+
+    Flowable<M> runWith(Configuration<S, M> configuration);
+}
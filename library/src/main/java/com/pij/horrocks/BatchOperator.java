@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.ObservableOperator;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Queues the items it receives and emits them on a scheduler, as lists of all the items queued since the previous
+ * list was emitted. Items arriving while a list is being emitted are part of the next list.
+ *
+ * @author PierreJean
+ */
+final class BatchOperator<T> implements ObservableOperator<List<T>, T> {
+
+    private final Scheduler scheduler;
+
+    BatchOperator(@NonNull Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Observer<? super T> apply(Observer<? super List<T>> downstream) {
+        return new BatchObserver<>(downstream, scheduler.createWorker());
+    }
+
+    private static final class BatchObserver<T> extends AtomicInteger implements Observer<T>, Disposable, Runnable {
+
+        private final Observer<? super List<T>> downstream;
+        private final Scheduler.Worker worker;
+        private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+        private Disposable upstream;
+        private Throwable error;
+        private volatile boolean done;
+        private volatile boolean disposed;
+
+        BatchObserver(Observer<? super List<T>> downstream, Scheduler.Worker worker) {
+            this.downstream = downstream;
+            this.worker = worker;
+        }
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            upstream = d;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T t) {
+            queue.offer(t);
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void dispose() {
+            if (!disposed) {
+                disposed = true;
+                upstream.dispose();
+                worker.dispose();
+                if (getAndIncrement() == 0) {
+                    queue.clear();
+                }
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+
+        private void schedule() {
+            if (getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        /**
+         * The drain loop. It only ever runs on one thread at a time.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            for (; ; ) {
+                if (disposed) {
+                    queue.clear();
+                    return;
+                }
+                boolean terminated = done;
+                List<T> batch = drain();
+                if (!batch.isEmpty()) {
+                    downstream.onNext(batch);
+                }
+                if (terminated && queue.isEmpty()) {
+                    disposed = true;
+                    if (error != null) {
+                        downstream.onError(error);
+                    } else {
+                        downstream.onComplete();
+                    }
+                    worker.dispose();
+                    return;
+                }
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        @NonNull
+        private List<T> drain() {
+            List<T> batch = new ArrayList<>();
+            T item;
+            while ((item = queue.poll()) != null) {
+                batch.add(item);
+            }
+            return batch;
+        }
+    }
+}
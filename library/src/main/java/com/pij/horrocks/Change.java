@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+
+/**
+ * A model emitted by a {@link DiffingEngine}, along with the model previously emitted and how each list property of the
+ * model changed between them.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class Change<M> {
+
+    @NonNull
+    static <M> Change<M> create(@Nullable M previous, @NonNull M current, @NonNull List<ListPatch> patches) {
+        return new AutoValue_Change<>(previous, current, patches);
+    }
+
+    /**
+     * <code>null</code> for the first model of a run.
+     */
+    @Nullable
+    public abstract M previous();
+
+    @NonNull
+    public abstract M current();
+
+    /**
+     * One patch per list property, in the order the properties were given to the {@link DiffingEngine}. For the first
+     * model of a run, the patches insert all items.
+     */
+    @NonNull
+    public abstract List<ListPatch> patches();
+}
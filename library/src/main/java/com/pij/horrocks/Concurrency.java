@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Observable;
+import io.reactivex.functions.Function;
+
+/**
+ * How a {@link MultipleReducerCreator} processes an event while the interactions of previous events are still running.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class Concurrency {
+
+    /**
+     * Processes all events at once, however many are running. The default.
+     */
+    @NonNull
+    public static Concurrency merge() {
+        return new AutoValue_Concurrency(Strategy.MERGE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Processes up to <code>limit</code> events at once. The others wait for one of them to complete.
+     */
+    @NonNull
+    public static Concurrency mergeAtMost(int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be strictly positive: " + limit);
+        return new AutoValue_Concurrency(Strategy.MERGE, limit);
+    }
+
+    /**
+     * Processes the events one after the other, in order.
+     */
+    @NonNull
+    public static Concurrency concat() {
+        return new AutoValue_Concurrency(Strategy.CONCAT, 1);
+    }
+
+    /**
+     * Cancels the interaction running when an event is received, so only the latest event emits reducers.
+     * Suitable for loads, e.g. a refresh supersedes the previous one.
+     */
+    @NonNull
+    public static Concurrency switchLatest() {
+        return new AutoValue_Concurrency(Strategy.SWITCH, 1);
+    }
+
+    /**
+     * Ignores the events received while an interaction is running.
+     * Suitable for actions that must not run twice, e.g. submitting a form.
+     */
+    @NonNull
+    public static Concurrency exhaust() {
+        return new AutoValue_Concurrency(Strategy.EXHAUST, 1);
+    }
+
+    abstract Strategy strategy();
+
+    abstract int limit();
+
+    @NonNull
+    <E, R> Observable<R> apply(@NonNull Observable<E> events,
+                               @NonNull Function<? super E, ? extends Observable<R>> process) {
+        switch (strategy()) {
+            case MERGE:
+                return limit() == Integer.MAX_VALUE ? events.flatMap(process) : events.flatMap(process, limit());
+            case CONCAT:
+                return events.concatMap(process);
+            case SWITCH:
+                return events.switchMap(process);
+            case EXHAUST:
+                return Observable.defer(() -> {
+                    AtomicBoolean busy = new AtomicBoolean();
+                    return events.filter(event -> busy.compareAndSet(false, true))
+                            .flatMap(event -> process.apply(event).doFinally(() -> busy.set(false)));
+                });
+            default:
+                throw new IllegalStateException("Unsupported strategy " + strategy());
+        }
+    }
+
+    enum Strategy {MERGE, CONCAT, SWITCH, EXHAUST}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observer;
+
+/**
+ * Lets any number of threads trigger events at once into an observer that must be called one thread at a time, e.g.
+ * a {@link io.reactivex.subjects.PublishSubject}, without a lock: each event is offered to a lock-free {@link MpscQueue},
+ * and whichever thread finds the queue idle delivers the events, its own and those offered meanwhile, until it is
+ * empty. Triggering never blocks; the events of each thread are delivered in the order it triggered them.
+ * <p>An event triggered from within the delivery of another one is delivered once that one is, rather than
+ * recursively.</p>
+ * <p>If the target throws, the exception is thrown to the delivering thread and the trigger is left idle: the events
+ * queued meanwhile are delivered by the next trigger.</p>
+ * <p>The work-in-progress counter it extends elects the delivering thread.</p>
+ *
+ * @author PierreJean
+ */
+final class ConcurrentTrigger<E> extends AtomicInteger implements Triggerable<E> {
+
+    private final MpscQueue<E> queue = new MpscQueue<>();
+    private final Observer<? super E> target;
+
+    ConcurrentTrigger(@NonNull Observer<? super E> target) {
+        this.target = target;
+    }
+
+    @Override
+    public void trigger(@NonNull E event) {
+        queue.offer(event);
+        if (getAndIncrement() == 0) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        for (; ; ) {
+            E event;
+            while ((event = queue.poll()) != null) {
+                try {
+                    target.onNext(event);
+                } catch (Throwable e) {
+                    set(0);
+                    throw e;
+                }
+            }
+            missed = addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+}
@@ -14,30 +14,59 @@
 
 package com.pij.horrocks;
 
+import android.support.annotation.Nullable;
+
 import com.google.auto.value.AutoValue;
 import com.pij.utils.Logger;
 import com.pij.utils.SysoutLogger;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+import static java.util.Collections.emptyMap;
 
 /**
  * <p>Created on 14/12/2017.</p>
+ * <p>Some options are only honoured by some engines, as their documentation says. An engine refuses a configuration
+ * that sets an option it would ignore, by throwing an {@link IllegalArgumentException} from <code>runWith()</code>.</p>
  *
  * @author PierreJean
  */
 @AutoValue
 public abstract class Configuration<S, M> {
 
+    private static final Overflow DEFAULT_OVERFLOW = Overflow.dropOldest(Flowable.bufferSize());
+    @SuppressWarnings("rawtypes")
+    private static final StateEquality NEVER_EQUAL = (left, right) -> false;
+
     public static <S, M> Builder<S, M> builder() {
         AutoValue_Configuration.Builder<S, M> result = new AutoValue_Configuration.Builder<>();
         return result
                 .logger(new SysoutLogger())
                 .transientResetter(s -> s)
-                .stateFilter((left, right) -> false)
+                .transientDetector(s -> true)
+                .stateFilter(neverEqual())
+                .distinctVersions(false)
                 .errorReducerFactory(e -> current -> current)
+                .overflows(emptyMap())
+                .defaultOverflow(DEFAULT_OVERFLOW)
+                .metrics(EngineMetrics.NONE)
+                .lanes(emptyMap())
+                .retryPolicies(emptyMap())
+                .defaultRetryPolicy(RetryPolicy.never())
                 ;
     }
 
+    /**
+     * The default prints to the standard output. Engines and creators are given their own {@link LevelLogger}.
+     */
     public abstract Logger logger();
 
     abstract Collection<ReducerCreator<S>> creators();
@@ -51,6 +80,13 @@ public abstract class Configuration<S, M> {
      */
     abstract TransientCleaner<S> transientResetter();
 
+    /**
+     * Lets the engine skip the {@link #transientResetter()} for states that have no transient property set, which
+     * saves a copy of the state for most reducers when the resetter copies the state.
+     * The default considers all states may have transient properties set, so the resetter is always applied.
+     */
+    abstract TransientDetector<S> transientDetector();
+
     /**
      * An Engine can use this to determine if a state has changed enough to be emitted.
      * This is useful when a UI blindly re-emits the same values and trigger the same feature.
@@ -68,7 +104,15 @@ public abstract class Configuration<S, M> {
     abstract StateEquality<S> stateFilter();
 
     /**
-     * Used to create a Reducer when a feature throws an exception unexpectedly.
+     * When set, a {@link VersionedEngine} does not emit a state a reducer returned unchanged, i.e. the same instance it
+     * was given. It compares the states' versions, in constant time, instead of calling the {@link #stateFilter()}: a
+     * configuration cannot set both.
+     * By default, every state is handed to the state filter.
+     */
+    abstract boolean distinctVersions();
+
+    /**
+     * Used to create a Reducer when a feature throws an exception unexpectedly, see {@link #retryPolicies()}.
      * It is expected tha tin state that contain an error field, the reducer produced by this factory
      * fills in the error property using the information present in the exception
      * The default factory creates a Reducer that passes the same state it receives.
@@ -77,6 +121,199 @@ public abstract class Configuration<S, M> {
 
     abstract Storage<S> store();
 
+    /**
+     * When set, a {@link DefaultEngine} or an {@link MpscEngine} applies reducers in batches: reducers are queued as they are emitted and applied on this
+     * scheduler. All the reducers queued since the last emission are applied in order and produce a single state, so
+     * a single call to the storage, the converter and the view.
+     * The transient properties are reset once per batch, before its first reducer, so the transient properties set by
+     * any reducer of a batch are emitted.
+     * When set, the {@link #reductionScheduler()} is ignored.
+     * By default, reducers are not batched: each of them produces a state.
+     */
+    @Nullable
+    abstract Scheduler batchingScheduler();
+
+    /**
+     * When set, a {@link DefaultEngine} loads the initial state from the storage on this scheduler, typically an I/O
+     * scheduler, rather than on the thread subscribing to the run. The creators are subscribed to once the initial
+     * state is loaded. See {@link #placeholder()} for what to display meanwhile.
+     * By default, the initial state is loaded when the run is subscribed to.
+     */
+    @Nullable
+    abstract Scheduler loadingScheduler();
+
+    /**
+     * When set, a {@link DefaultEngine} emits this model first, as soon as the run is subscribed to, so the view has
+     * something to display while the initial state is loaded, see {@link #loadingScheduler()}.
+     * By default, the first model emitted is that of the initial state.
+     */
+    @Nullable
+    abstract M placeholder();
+
+    /**
+     * When set, a {@link DefaultEngine} applies the reducers on this scheduler, and saves the resulting states there.
+     * Each run uses a single worker of the scheduler, so all reductions of a run are confined to one thread at a time,
+     * whichever thread the creators emit from: reducers need no synchronization and the reduction stays off the UI
+     * thread. The initial state is still loaded on the thread subscribing to the run, see {@link #loadingScheduler()}.
+     * Ignored when {@link #batchingScheduler()} is set, as the batches are reduced on that scheduler.
+     * By default, reducers are applied on the thread that emits them.
+     */
+    @Nullable
+    abstract Scheduler reductionScheduler();
+
+    /**
+     * When set, a {@link DefaultEngine} converts the states to models on this scheduler.
+     * By default, states are converted where they are reduced.
+     */
+    @Nullable
+    abstract Scheduler conversionScheduler();
+
+    /**
+     * When set, a {@link DefaultEngine} emits the models to its observers, e.g. the view, on this scheduler.
+     * By default, models are emitted where they are converted.
+     */
+    @Nullable
+    abstract Scheduler deliveryScheduler();
+
+    /**
+     * The overflow strategy of specific creators. Only a {@link BackpressureEngine} honours it.
+     * By default, no creator has a specific strategy.
+     */
+    abstract Map<ReducerCreator<S>, Overflow> overflows();
+
+    /**
+     * The overflow strategy of the creators absent from {@link #overflows()}. Only a {@link BackpressureEngine}
+     * honours it. The default keeps the latest {@link Flowable#bufferSize()} reducers, dropping the oldest ones: a
+     * burst of reducers never stops a creator. See {@link Overflow#bufferBounded(int)} to fail instead.
+     */
+    abstract Overflow defaultOverflow();
+
+    /**
+     * Where a {@link DefaultEngine} reports the reducers of each creator and the time spent in each stage of a run.
+     * The default, {@link EngineMetrics#NONE}, measures nothing.
+     */
+    abstract EngineMetrics metrics();
+
+    /**
+     * Where a {@link DefaultEngine} records the states of a run, and which it adds to the creators so the history can
+     * travel back in time. By default, there is none, and nothing is recorded.
+     */
+    @Nullable
+    abstract StateHistory<S> history();
+
+    /**
+     * The lanes of specific creators. Only an {@link MpscEngine} honours them.
+     * By default, all creators are in the {@link Lane#normal()} lane and their reducers are applied in the order they
+     * were emitted.
+     */
+    abstract Map<ReducerCreator<S>, Lane> lanes();
+
+    /**
+     * What the engine does when specific creators fail.
+     * By default, no creator has a specific policy.
+     */
+    abstract Map<ReducerCreator<S>, RetryPolicy> retryPolicies();
+
+    /**
+     * What the engine does when the creators absent from {@link #retryPolicies()} fail. The default is
+     * {@link RetryPolicy#never()}: the creator stops after the error reducer of its failure.
+     */
+    abstract RetryPolicy defaultRetryPolicy();
+
+    /**
+     * The cleaner engines apply: the {@link #transientResetter()}, only called when the {@link #transientDetector()}
+     * finds a transient property set.
+     */
+    TransientCleaner<S> cleaner() {
+        TransientCleaner<S> resetter = transientResetter();
+        TransientDetector<S> detector = transientDetector();
+        return state -> detector.hasTransients(state) ? resetter.clean(state) : state;
+    }
+
+    RetryPolicy retryPolicyOf(ReducerCreator<S> creator) {
+        RetryPolicy result = retryPolicies().get(creator);
+        return result == null ? defaultRetryPolicy() : result;
+    }
+
+    /**
+     * The reducers of a creator, with the error handling of its {@link RetryPolicy}.
+     */
+    Observable<Reducer<S>> reducersOf(ReducerCreator<S> creator, Observable<Reducer<S>> reducers) {
+        return retryPolicyOf(creator).apply(reducers, errorReducerFactory());
+    }
+
+    Overflow overflowOf(ReducerCreator<S> creator) {
+        Overflow result = overflows().get(creator);
+        return result == null ? defaultOverflow() : result;
+    }
+
+    /**
+     * Refuses this configuration if it sets options, other than those given, that only some engines honour.
+     *
+     * @param engine   the engine checking the configuration, named in the exception.
+     * @param honoured the options the engine honours.
+     * @throws IllegalArgumentException naming the options the engine would ignore.
+     */
+    void requireHonoured(Object engine, Option... honoured) {
+        Set<Option> ignored = engineOptions();
+        ignored.removeAll(Arrays.asList(honoured));
+        if (!ignored.isEmpty()) {
+            throw new IllegalArgumentException(engine.getClass().getSimpleName() + " ignores " + ignored);
+        }
+    }
+
+    /**
+     * The options only some engines honour that this configuration sets, i.e. that differ from their default.
+     */
+    @SuppressWarnings("unchecked")
+    private static <S> StateEquality<S> neverEqual() {
+        return NEVER_EQUAL;
+    }
+
+    private Set<Option> engineOptions() {
+        Set<Option> result = EnumSet.noneOf(Option.class);
+        if (distinctVersions()) result.add(Option.DISTINCT_VERSIONS);
+        if (batchingScheduler() != null) result.add(Option.BATCHING_SCHEDULER);
+        if (loadingScheduler() != null) result.add(Option.LOADING_SCHEDULER);
+        if (placeholder() != null) result.add(Option.PLACEHOLDER);
+        if (reductionScheduler() != null) result.add(Option.REDUCTION_SCHEDULER);
+        if (conversionScheduler() != null) result.add(Option.CONVERSION_SCHEDULER);
+        if (deliveryScheduler() != null) result.add(Option.DELIVERY_SCHEDULER);
+        if (!overflows().isEmpty() || !defaultOverflow().equals(DEFAULT_OVERFLOW)) result.add(Option.OVERFLOWS);
+        if (metrics() != EngineMetrics.NONE) result.add(Option.METRICS);
+        if (history() != null) result.add(Option.HISTORY);
+        if (!lanes().isEmpty()) result.add(Option.LANES);
+        return result;
+    }
+
+    /**
+     * The options only some engines honour, named after their builder methods.
+     */
+    enum Option {
+        DISTINCT_VERSIONS("distinctVersions"),
+        BATCHING_SCHEDULER("batchingScheduler"),
+        LOADING_SCHEDULER("loadingScheduler"),
+        PLACEHOLDER("placeholder"),
+        REDUCTION_SCHEDULER("reductionScheduler"),
+        CONVERSION_SCHEDULER("conversionScheduler"),
+        DELIVERY_SCHEDULER("deliveryScheduler"),
+        OVERFLOWS("overflows"),
+        METRICS("metrics"),
+        HISTORY("history"),
+        LANES("lanes");
+
+        private final String builderMethod;
+
+        Option(String builderMethod) {
+            this.builderMethod = builderMethod;
+        }
+
+        @Override
+        public String toString() {
+            return builderMethod;
+        }
+    }
+
 
     @AutoValue.Builder
     public abstract static class Builder<S, M> {
@@ -89,12 +326,53 @@ public abstract class Configuration<S, M> {
 
         public abstract Builder<S, M> transientResetter(TransientCleaner<S> transientResetter);
 
+        public abstract Builder<S, M> transientDetector(TransientDetector<S> transientDetector);
+
         public abstract Builder<S, M> stateFilter(StateEquality<S> stateFilter);
 
+        public abstract Builder<S, M> distinctVersions(boolean distinctVersions);
+
         public abstract Builder<S, M> errorReducerFactory(ErrorReducerFactory<S> errorReducerFactory);
 
         public abstract Builder<S, M> store(Storage<S> storage);
 
-        public abstract Configuration<S, M> build();
+        public abstract Builder<S, M> batchingScheduler(@Nullable Scheduler batchingScheduler);
+
+        public abstract Builder<S, M> loadingScheduler(@Nullable Scheduler loadingScheduler);
+
+        public abstract Builder<S, M> placeholder(@Nullable M placeholder);
+
+        public abstract Builder<S, M> reductionScheduler(@Nullable Scheduler reductionScheduler);
+
+        public abstract Builder<S, M> conversionScheduler(@Nullable Scheduler conversionScheduler);
+
+        public abstract Builder<S, M> deliveryScheduler(@Nullable Scheduler deliveryScheduler);
+
+        public abstract Builder<S, M> overflows(Map<ReducerCreator<S>, Overflow> overflows);
+
+        public abstract Builder<S, M> defaultOverflow(Overflow defaultOverflow);
+
+        public abstract Builder<S, M> metrics(EngineMetrics metrics);
+
+        public abstract Builder<S, M> history(@Nullable StateHistory<S> history);
+
+        public abstract Builder<S, M> lanes(Map<ReducerCreator<S>, Lane> lanes);
+
+        public abstract Builder<S, M> retryPolicies(Map<ReducerCreator<S>, RetryPolicy> retryPolicies);
+
+        public abstract Builder<S, M> defaultRetryPolicy(RetryPolicy defaultRetryPolicy);
+
+        abstract Configuration<S, M> autoBuild();
+
+        /**
+         * @throws IllegalArgumentException if both a state filter and {@link Configuration#distinctVersions()} are set.
+         */
+        public Configuration<S, M> build() {
+            Configuration<S, M> result = autoBuild();
+            if (result.distinctVersions() && result.stateFilter() != NEVER_EQUAL) {
+                throw new IllegalArgumentException("distinctVersions replaces the state filter: set only one of them");
+            }
+            return result;
+        }
     }
 }
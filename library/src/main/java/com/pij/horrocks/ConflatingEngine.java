@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.Observer;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Runs an engine and hands the models to each subscriber on a worker of its own, so a slow view does not hold up the
+ * reduction or the other views. Each subscriber has a single slot: a model it has not yet got is replaced by the next
+ * one, so a slow subscriber skips intermediate models but always gets the latest.
+ * <p>A subscriber that misses more than a threshold of models in a row is reported to a {@link LagListener}, once
+ * until it catches up, when it is reported again with the number of models it missed. It is also reported to the
+ * {@link EngineMetrics} of the run's {@link Configuration}, which also count every model conflated. Use it to isolate
+ * slow consumers, e.g. logging or persistence, from the interactive view.</p>
+ *
+ * @author PierreJean
+ */
+public final class ConflatingEngine<S, M> implements Engine<S, M> {
+
+    private final Engine<S, M> engine;
+    private final Scheduler scheduler;
+    private final int lagThreshold;
+    private final LagListener listener;
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * @param scheduler    where each subscriber gets the models, on a worker of its own.
+     * @param lagThreshold how many models in a row a subscriber can miss before it is deemed lagging.
+     */
+    public ConflatingEngine(@NonNull Engine<S, M> engine, @NonNull Scheduler scheduler, int lagThreshold,
+                            @NonNull LagListener listener) {
+        if (lagThreshold < 1) throw new IllegalArgumentException("lagThreshold must be positive: " + lagThreshold);
+        this.engine = engine;
+        this.scheduler = scheduler;
+        this.lagThreshold = lagThreshold;
+        this.listener = listener;
+    }
+
+    @Override
+    public Observable<M> runWith(Configuration<S, M> configuration) {
+        return engine.runWith(configuration)
+                .lift(downstream -> new ConflatingObserver<>(downstream, scheduler.createWorker(), this,
+                        configuration.metrics(), subscribers.incrementAndGet()));
+    }
+
+    /**
+     * The slot of one subscriber. The work-in-progress counter it extends elects the worker task draining the slot.
+     */
+    private static final class ConflatingObserver<M> extends AtomicInteger implements Observer<M>, Disposable, Runnable {
+
+        private final AtomicReference<M> slot = new AtomicReference<>();
+        /**
+         * The models conflated since the subscriber last got one.
+         */
+        private final AtomicInteger behind = new AtomicInteger();
+        private final Observer<? super M> downstream;
+        private final Scheduler.Worker worker;
+        private final ConflatingEngine<?, M> engine;
+        private final EngineMetrics metrics;
+        private final int number;
+        private Disposable upstream;
+        private Throwable error;
+        private volatile boolean done;
+        private volatile boolean disposed;
+
+        ConflatingObserver(Observer<? super M> downstream, Scheduler.Worker worker, ConflatingEngine<?, M> engine,
+                           EngineMetrics metrics, int number) {
+            this.downstream = downstream;
+            this.worker = worker;
+            this.engine = engine;
+            this.metrics = metrics;
+            this.number = number;
+        }
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            upstream = d;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(M model) {
+            if (slot.getAndSet(model) != null) {
+                metrics.modelConflated();
+                if (behind.incrementAndGet() == engine.lagThreshold + 1) {
+                    metrics.subscriberLagging();
+                    engine.listener.lagging(number, engine.lagThreshold + 1);
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            error = e;
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void dispose() {
+            if (!disposed) {
+                disposed = true;
+                upstream.dispose();
+                worker.dispose();
+                if (getAndIncrement() == 0) {
+                    slot.lazySet(null);
+                }
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+
+        private void schedule() {
+            if (getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            for (; ; ) {
+                if (disposed) {
+                    slot.lazySet(null);
+                    return;
+                }
+                // Read before the slot: no model can be emitted once done.
+                boolean terminated = done;
+                M model = slot.getAndSet(null);
+                if (model != null) {
+                    int conflated = behind.getAndSet(0);
+                    if (conflated > engine.lagThreshold) {
+                        engine.listener.caughtUp(number, conflated);
+                    }
+                    downstream.onNext(model);
+                }
+                if (terminated) {
+                    disposed = true;
+                    if (error == null) {
+                        downstream.onComplete();
+                    } else {
+                        downstream.onError(error);
+                    }
+                    worker.dispose();
+                    return;
+                }
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -14,84 +14,169 @@
 
 package com.pij.horrocks;
 
+import android.support.annotation.Nullable;
+
 import com.pij.utils.Logger;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
 import io.reactivex.disposables.Disposable;
 
+import static com.pij.horrocks.Configuration.Option.BATCHING_SCHEDULER;
+import static com.pij.horrocks.Configuration.Option.CONVERSION_SCHEDULER;
+import static com.pij.horrocks.Configuration.Option.DELIVERY_SCHEDULER;
+import static com.pij.horrocks.Configuration.Option.DISTINCT_VERSIONS;
+import static com.pij.horrocks.Configuration.Option.HISTORY;
+import static com.pij.horrocks.Configuration.Option.LOADING_SCHEDULER;
+import static com.pij.horrocks.Configuration.Option.METRICS;
+import static com.pij.horrocks.Configuration.Option.PLACEHOLDER;
+import static com.pij.horrocks.Configuration.Option.REDUCTION_SCHEDULER;
+
 /**
  * <p>Created on 14/12/2017.</p>
  *
  * @author PierreJean
  */
 
-public final class DefaultEngine<S, M> implements Engine<S, M> {
+public final class DefaultEngine<S, M> implements VersionedEngine<S, M> {
 
-    private final Logger logger;
+    private final LevelLogger logger;
 
+    /**
+     * Prints every state and model, see {@link #DefaultEngine(LevelLogger)} to restrict that.
+     */
     public DefaultEngine(Logger logger) {
+        this(LevelLogger.verbose(logger));
+    }
+
+    public DefaultEngine(LevelLogger logger) {
         this.logger = logger;
     }
 
     @Override
     public Observable<M> runWith(Configuration<S, M> configuration) {
-        Storage<S> storage = configuration.store();
+        return runVersionedWith(configuration).map(Versioned::value);
+    }
+
+    @Override
+    public Observable<Versioned<M>> runVersionedWith(Configuration<S, M> configuration) {
+        configuration.requireHonoured(this, DISTINCT_VERSIONS, BATCHING_SCHEDULER, LOADING_SCHEDULER, PLACEHOLDER,
+                REDUCTION_SCHEDULER, CONVERSION_SCHEDULER, DELIVERY_SCHEDULER, METRICS, HISTORY);
+        Instrumentation instrumentation = new Instrumentation(configuration.metrics());
+        Storage<S> storage = instrumentation.storage(configuration.store());
         Collection<ReducerCreator<S>> reducerCreators = configuration.creators();
-        TransientCleaner<S> transientCleaner = configuration.transientResetter();
-        StateEquality<S> stateFilter = configuration.stateFilter();
-        StateConverter<S, M> stateConverter = configuration.stateToModel();
-        ErrorReducerFactory<S> errorReducerFactory = configuration.errorReducerFactory();
-        Callable<S> initialValue = () -> transientCleaner.clean(storage.load());
-        return Observable.fromIterable(reducerCreators)
-                .flatMap(feature -> feature.reducers()
-                        .doOnTerminate(() -> logger.print(getClass(), "ReducerCreator %s Unexpected completion!!!", feature.hashCode()))
-                        .onErrorReturn(errorReducerFactory::create)
-                        .retry()
-                )
-                .scanWith(initialValue, (current, reducer) -> updateState(current, reducer, transientCleaner))
-                .distinctUntilChanged(stateFilter::equal)
+        TransientCleaner<S> transientCleaner = instrumentation.cleaner(configuration.cleaner());
+        StateEquality<S> stateFilter = instrumentation.stateFilter(configuration.stateFilter());
+        boolean distinctVersions = configuration.distinctVersions();
+        StateConverter<S, M> stateConverter = instrumentation.converter(configuration.stateToModel());
+        Scheduler batchingScheduler = configuration.batchingScheduler();
+        StateHistory<S> history = configuration.history();
+        Callable<Versioned<S>> initialValue = () -> Versioned.initial(recordInitial(history, transientCleaner.clean(storage.load())));
+        Observable<Reducer<S>> reducers = Observable.fromIterable(creatorsOf(reducerCreators, history))
+                .flatMap(feature -> configuration.reducersOf(feature, recordedReducersOf(feature, instrumentation, history)
+                        .doOnTerminate(() -> logger.print(LogLevel.WARN, getClass(), "ReducerCreator %d Unexpected completion!!!", feature.hashCode())))
+                );
+        Scheduler reductionScheduler = batchingScheduler == null ? configuration.reductionScheduler() : null;
+        Scheduler loadingScheduler = configuration.loadingScheduler();
+        Observable<Versioned<S>> states = loadingScheduler == null
+                ? statesOf(reducers, initialValue, transientCleaner, batchingScheduler, reductionScheduler)
+                : Observable.fromCallable(initialValue).subscribeOn(loadingScheduler)
+                .concatMap(initial -> statesOf(reducers, () -> initial, transientCleaner, batchingScheduler, reductionScheduler));
+        M placeholder = configuration.placeholder();
+        return states
+                .distinctUntilChanged((previous, next) -> distinctVersions
+                        ? previous.sameVersionAs(next)
+                        : stateFilter.equal(previous.value(), next.value()))
                 .doOnNext(this::logState)
-                .doOnNext(storage::save)
-                .map(stateConverter::convert)
+                .doOnNext(state -> storage.save(state.value()))
+                .compose(observeOn(configuration.conversionScheduler()))
+                .map(state -> state.convert(stateConverter))
                 .doOnNext(this::logModel)
+                .compose(startWith(placeholder))
+                .compose(observeOn(configuration.deliveryScheduler()))
+                .compose(instrumentation.emission())
                 .doOnError(this::logTerminalFailure)
                 .doOnComplete(this::logUnexpectedCompletion)
+                .doFinally(Storages.flushOf(configuration.store()))
                 .replay(1).refCount()
                 .doOnDispose(this::logDispose)
                 .doOnSubscribe(this::logSubscribe)
                 ;
     }
 
+    /**
+     * The states of a run, starting with the initial one. The creators are only subscribed to once the initial state
+     * has been emitted.
+     */
+    private static <S> Observable<Versioned<S>> statesOf(Observable<Reducer<S>> reducers,
+                                                          Callable<Versioned<S>> initialValue,
+                                                          TransientCleaner<S> transientCleaner,
+                                                          @Nullable Scheduler batchingScheduler,
+                                                          @Nullable Scheduler reductionScheduler) {
+        return batchingScheduler == null
+                ? reducers.compose(observeOn(reductionScheduler))
+                .scanWith(initialValue, (current, reducer) -> current.next(Reductions.reduce(current.value(), reducer, transientCleaner)))
+                : reducers.lift(new BatchOperator<Reducer<S>>(batchingScheduler))
+                .scanWith(initialValue, (current, batch) -> current.next(Reductions.reduce(current.value(), batch, transientCleaner)));
+    }
+
+    private static <M> ObservableTransformer<Versioned<M>, Versioned<M>> startWith(@Nullable M placeholder) {
+        return placeholder == null ? upstream -> upstream : upstream -> upstream.startWith(Versioned.placeholder(placeholder));
+    }
+
+    private static <T> ObservableTransformer<T, T> observeOn(@Nullable Scheduler scheduler) {
+        return scheduler == null ? upstream -> upstream : upstream -> upstream.observeOn(scheduler);
+    }
+
+    private static <S> Iterable<ReducerCreator<S>> creatorsOf(Collection<ReducerCreator<S>> creators,
+                                                              @Nullable StateHistory<S> history) {
+        if (history == null) return creators;
+        List<ReducerCreator<S>> result = new ArrayList<>(creators);
+        result.add(history);
+        return result;
+    }
+
+    private static <S> S recordInitial(@Nullable StateHistory<S> history, S state) {
+        if (history != null) history.record(null, state);
+        return state;
+    }
+
+    private static <S> Observable<Reducer<S>> recordedReducersOf(ReducerCreator<S> creator,
+                                                                 Instrumentation instrumentation,
+                                                                 @Nullable StateHistory<S> history) {
+        Observable<Reducer<S>> reducers = instrumentation.reducersOf(creator);
+        if (history == null) return reducers;
+        return reducers.map(reducer -> history.recording(creator, reducer));
+    }
+
     private void logSubscribe(@SuppressWarnings("unused") Disposable ignored) {
-        logger.print(getClass(), "Engine " + hashCode() + " Start of this run");
+        logger.print(LogLevel.DEBUG, getClass(), "Engine %d Start of this run", hashCode());
     }
 
     private void logDispose() {
-        logger.print(getClass(), "Engine %d End of this run", hashCode());
+        logger.print(LogLevel.DEBUG, getClass(), "Engine %d End of this run", hashCode());
     }
 
     private void logUnexpectedCompletion() {
-        logger.print(getClass(), "Engine %d Unexpected completion!!!", hashCode());
+        logger.print(LogLevel.WARN, getClass(), "Engine %d Unexpected completion!!!", hashCode());
     }
 
     private void logTerminalFailure(Throwable e) {
-        logger.print(getClass(), e, "Engine %s Terminal failure!!! ", hashCode());
-    }
-
-    private void logModel(M it) {
-        logger.print(getClass(), "Emitting %s", it);
+        logger.print(LogLevel.ERROR, getClass(), e, "Engine %d Terminal failure!!! ", hashCode());
     }
 
-    private void logState(S it) {
-        logger.print(getClass(), "Calculating %s", it);
+    private void logModel(Versioned<M> it) {
+        logger.print(LogLevel.VERBOSE, getClass(), "Emitting %s", it.value());
     }
 
-    private S updateState(S current, Reducer<S> reducer, TransientCleaner<S> transientCleaner) {
-        S transientCleaned = transientCleaner.clean(current);
-        return reducer.reduce(transientCleaned);
+    private void logState(Versioned<S> it) {
+        logger.print(LogLevel.VERBOSE, getClass(), "Calculating %s", it.value());
     }
 
 }
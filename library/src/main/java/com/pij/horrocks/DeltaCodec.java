@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Encodes the change between two states, for a {@link JournalStorage}. A delta should be small, in the order of the
+ * change rather than of the state, e.g. the item added to a list rather than the list.
+ *
+ * @author PierreJean
+ */
+public interface DeltaCodec<S> {
+
+    /**
+     * @return the bytes <code>apply</code> needs to turn <code>previous</code> into <code>next</code>.
+     */
+    @NonNull
+    byte[] encode(@NonNull S previous, @NonNull S next);
+
+    @NonNull
+    S apply(@NonNull S state, @NonNull byte[] delta);
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * Runs an engine and emits a {@link Change} for each model, rather than the model alone. Each change carries a
+ * {@link ListPatch} for each of the list properties of the model given at construction, so a view can update only the
+ * items that changed instead of redrawing the whole list.
+ * <p>Patches are calculated on the scheduler given at construction, typically a computation scheduler; the view has
+ * to observe the changes on its own thread. Each subscriber gets its own sequence of changes, starting with the
+ * current model.</p>
+ *
+ * @author PierreJean
+ */
+public final class DiffingEngine<S, M> {
+
+    private final Engine<S, M> engine;
+    private final Scheduler scheduler;
+    private final List<Selector<M, ? extends List<?>>> listProperties;
+
+    /**
+     * @param listProperties the list properties of the model to calculate patches for.
+     */
+    @SafeVarargs
+    public DiffingEngine(@NonNull Engine<S, M> engine, @NonNull Scheduler scheduler,
+                         @NonNull Selector<M, ? extends List<?>>... listProperties) {
+        this.engine = engine;
+        this.scheduler = scheduler;
+        this.listProperties = Collections.unmodifiableList(Arrays.asList(listProperties));
+    }
+
+    @NonNull
+    public Observable<Change<M>> runWith(@NonNull Configuration<S, M> configuration) {
+        Observable<M> models = engine.runWith(configuration).observeOn(scheduler);
+        return Observable.defer(() -> {
+            Differ differ = new Differ();
+            return models.map(differ::next);
+        });
+    }
+
+    /**
+     * Remembers the last model of one subscriber.
+     */
+    private final class Differ {
+
+        private M previous;
+
+        @NonNull
+        Change<M> next(@NonNull M current) {
+            List<ListPatch> patches = new ArrayList<>(listProperties.size());
+            for (Selector<M, ? extends List<?>> property : listProperties) {
+                List<?> currentList = property.select(current);
+                List<?> previousList = previous == null ? Collections.emptyList() : property.select(previous);
+                patches.add(ListDiff.between(previousList, currentList));
+            }
+            Change<M> result = Change.create(previous, current, Collections.unmodifiableList(patches));
+            previous = current;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.CompletableSubject;
+
+/**
+ * Runs many sessions, each with its own engine run, keyed by <code>K</code>. A session is created when an action is
+ * dispatched to it or its models are observed, and evicted once it has been idle for a while: its engine run ends, so
+ * its last state is saved (and flushed) to its storage, and all its objects can be collected. The next action creates
+ * it again, from its storage.
+ * <p>All sessions share one scheduler. Each session gets a worker of that scheduler, so the actions dispatched to a
+ * session run in order, one at a time, while different sessions run in parallel within the limits of the scheduler.
+ * A bounded scheduler, e.g. {@link io.reactivex.schedulers.Schedulers#from(java.util.concurrent.Executor)} of a fixed
+ * thread pool, bounds the threads of the whole host.</p>
+ *
+ * @author PierreJean
+ */
+public final class EngineHost<K, S, M, T extends HostedSession<S, M>> implements Disposable {
+
+    private final Engine<S, M> engine;
+    private final SessionFactory<K, T> factory;
+    private final Scheduler scheduler;
+    private final long idleMillis;
+    @Nullable
+    private final Weigher<M> weigher;
+    private final LevelLogger logger;
+    private final ConcurrentMap<K, Slot> slots = new ConcurrentHashMap<>();
+    private final Disposable evictions;
+    private volatile boolean disposed;
+
+    /**
+     * @param idleTimeout how long a session may go without dispatch nor observer before being evicted. Idle sessions are
+     *                    looked for at that interval.
+     */
+    public EngineHost(@NonNull Engine<S, M> engine, @NonNull SessionFactory<K, T> factory, @NonNull Scheduler scheduler,
+                      long idleTimeout, @NonNull TimeUnit unit, @NonNull LevelLogger logger) {
+        this(engine, factory, scheduler, idleTimeout, unit, null, logger);
+    }
+
+    /**
+     * @param weigher estimates the memory of each session, from its latest model.
+     */
+    public EngineHost(@NonNull Engine<S, M> engine, @NonNull SessionFactory<K, T> factory, @NonNull Scheduler scheduler,
+                      long idleTimeout, @NonNull TimeUnit unit, @Nullable Weigher<M> weigher, @NonNull LevelLogger logger) {
+        this.engine = engine;
+        this.factory = factory;
+        this.scheduler = scheduler;
+        this.idleMillis = unit.toMillis(idleTimeout);
+        this.weigher = weigher;
+        this.logger = logger;
+        evictions = scheduler.schedulePeriodicallyDirect(this::evictIdleSessions, idleTimeout, idleTimeout, unit);
+    }
+
+    /**
+     * Runs <code>action</code> on the session of <code>key</code>, on the session's worker. Creates the session if it
+     * is not running. A failure of the action is logged and does not affect the session.
+     *
+     * @throws IllegalStateException if the host is disposed.
+     */
+    public void dispatch(@NonNull K key, @NonNull Consumer<? super T> action) {
+        while (!slotOf(key).dispatch(action)) {
+            // The slot was evicted meanwhile, and removed beforehand: the next one is a new session.
+        }
+    }
+
+    /**
+     * The models of the session of <code>key</code>, starting with the latest one. Creates the session if it is not
+     * running. The session is not evicted while observed. Completes when the host is disposed, and fails with an
+     * {@link IllegalStateException} if it already is.
+     */
+    @NonNull
+    public Observable<M> models(@NonNull K key) {
+        return Observable.defer(() -> {
+            Slot slot;
+            Observable<M> models;
+            do {
+                slot = slotOf(key);
+                models = slot.observe();
+            } while (models == null);
+            return models;
+        });
+    }
+
+    /**
+     * @return <code>null</code> if the session of <code>key</code> is not running.
+     */
+    @Nullable
+    public SessionStats stats(@NonNull K key) {
+        Slot slot = slots.get(key);
+        return slot == null ? null : slot.stats();
+    }
+
+    public int sessionCount() {
+        return slots.size();
+    }
+
+    /**
+     * Evicts the sessions that have been idle for at least the idle timeout. The host does it periodically.
+     */
+    public void evictIdleSessions() {
+        long now = scheduler.now(TimeUnit.MILLISECONDS);
+        for (Slot slot : slots.values()) {
+            if (slot.evictIfIdle(now)) {
+                logger.print(LogLevel.DEBUG, getClass(), "Evicted session %s", slot.key);
+            }
+        }
+    }
+
+    /**
+     * Stops all sessions, which saves their state, and completes their models. No session can be started afterwards.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        evictions.dispose();
+        for (Slot slot : slots.values()) {
+            slot.evict();
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    /**
+     * @throws IllegalStateException if the host is disposed.
+     */
+    @NonNull
+    private Slot slotOf(@NonNull K key) {
+        checkNotDisposed();
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            Slot created = new Slot(key);
+            slot = slots.putIfAbsent(key, created);
+            if (slot == null) {
+                slot = created;
+                // The host may have been disposed while the slot was added, after it evicted the slots it found.
+                if (disposed) {
+                    created.evict();
+                    checkNotDisposed();
+                }
+            }
+        }
+        return slot;
+    }
+
+    private void checkNotDisposed() {
+        if (disposed) throw new IllegalStateException("The host is disposed");
+    }
+
+    /**
+     * The running session of a key. A slot is removed from the host before it is marked evicted, and never used
+     * again afterwards.
+     */
+    private final class Slot {
+
+        private final K key;
+        private final AtomicInteger pendingActions = new AtomicInteger();
+        private final AtomicLong dispatchCount = new AtomicLong();
+        private final AtomicInteger observers = new AtomicInteger();
+        /**
+         * Completes the models of the observers when the slot is evicted.
+         */
+        private final CompletableSubject ended = CompletableSubject.create();
+        private volatile long lastActive;
+        private volatile long weight;
+        private boolean evicted;
+        private T session;
+        private Scheduler.Worker worker;
+        private Observable<M> models;
+        private Disposable run;
+
+        Slot(K key) {
+            this.key = key;
+        }
+
+        /**
+         * @return false if the slot is evicted.
+         */
+        synchronized boolean dispatch(Consumer<? super T> action) {
+            if (evicted) return false;
+            start();
+            pendingActions.incrementAndGet();
+            dispatchCount.incrementAndGet();
+            lastActive = scheduler.now(TimeUnit.MILLISECONDS);
+            // Scheduled under the lock, so the worker cannot be disposed in between. The session is captured, as it
+            // is cleared when the slot is evicted.
+            T target = session;
+            worker.schedule(() -> {
+                try {
+                    action.accept(target);
+                } catch (Throwable e) {
+                    logger.print(LogLevel.ERROR, EngineHost.class, e, "Session %d failed to run an action", key.hashCode());
+                } finally {
+                    pendingActions.decrementAndGet();
+                }
+            });
+            return true;
+        }
+
+        /**
+         * @return null if the slot is evicted.
+         */
+        @Nullable
+        synchronized Observable<M> observe() {
+            if (evicted) return null;
+            start();
+            observers.incrementAndGet();
+            return models.takeUntil(ended.toObservable()).doFinally(() -> {
+                observers.decrementAndGet();
+                lastActive = scheduler.now(TimeUnit.MILLISECONDS);
+            });
+        }
+
+        private void start() {
+            if (session != null) return;
+            session = factory.create(key);
+            worker = scheduler.createWorker();
+            models = engine.runWith(session.configuration());
+            run = models.subscribe(this::weigh,
+                    e -> logger.print(LogLevel.ERROR, EngineHost.class, e, "Session %d failed", key.hashCode()));
+            lastActive = scheduler.now(TimeUnit.MILLISECONDS);
+            logger.print(LogLevel.DEBUG, EngineHost.class, "Started session %s", key);
+        }
+
+        private void weigh(M model) {
+            if (weigher != null) weight = weigher.weigh(model);
+        }
+
+        synchronized boolean evictIfIdle(long now) {
+            if (evicted || pendingActions.get() > 0 || observers.get() > 0 || now - lastActive < idleMillis) return false;
+            evict();
+            return true;
+        }
+
+        synchronized void evict() {
+            if (evicted) return;
+            slots.remove(key, this);
+            evicted = true;
+            ended.onComplete();
+            if (session != null) {
+                run.dispose();
+                worker.dispose();
+                session = null;
+                models = null;
+            }
+        }
+
+        SessionStats stats() {
+            return SessionStats.create(pendingActions.get(), dispatchCount.get(),
+                    scheduler.now(TimeUnit.MILLISECONDS) - lastActive, weight);
+        }
+    }
+}
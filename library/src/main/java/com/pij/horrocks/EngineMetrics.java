@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives measurements of what happens inside an engine run, to find out which feature or stage slows a screen down.
+ * Calls may come from any thread, including several at once, and are on the path of every reducer: implementations
+ * must be thread-safe and cheap. {@link InMemoryMetrics} keeps them in memory.
+ * <p>Only the {@link DefaultEngine}, the {@link ConflatingEngine} and the {@link MultipleReducerCreator} report
+ * metrics.</p>
+ *
+ * @author PierreJean
+ */
+public interface EngineMetrics {
+
+    /**
+     * Records nothing. An engine given these metrics does not measure anything either.
+     */
+    EngineMetrics NONE = new EngineMetrics() {
+        @Override
+        public void reducerEmitted(@NonNull ReducerCreator<?> creator) {
+        }
+
+        @Override
+        public void stageCompleted(@NonNull Stage stage, long nanos) {
+        }
+
+        @Override
+        public void stateFiltered(boolean dropped) {
+        }
+
+        @Override
+        public void interactionStarted() {
+        }
+
+        @Override
+        public void interactionCompleted() {
+        }
+
+        @Override
+        public void modelConflated() {
+        }
+
+        @Override
+        public void subscriberLagging() {
+        }
+    };
+
+    void reducerEmitted(@NonNull ReducerCreator<?> creator);
+
+    /**
+     * @param nanos how long one execution of <code>stage</code> took.
+     */
+    void stageCompleted(@NonNull Stage stage, long nanos);
+
+    /**
+     * A state went through the {@link Configuration#stateFilter()}.
+     *
+     * @param dropped true if the filter deemed the state equal to the previous one, so it was not emitted.
+     */
+    void stateFiltered(boolean dropped);
+
+    /**
+     * An {@link AsyncInteraction} started processing an event.
+     */
+    void interactionStarted();
+
+    /**
+     * An {@link AsyncInteraction} completed, failed or was cancelled.
+     */
+    void interactionCompleted();
+
+    /**
+     * A subscriber of a {@link ConflatingEngine} was too slow to get a model before the next one replaced it.
+     */
+    void modelConflated();
+
+    /**
+     * A subscriber of a {@link ConflatingEngine} fell behind by more models than its threshold.
+     */
+    void subscriberLagging();
+
+    enum Stage {
+        /**
+         * A {@link Reducer} applied to a state.
+         */
+        REDUCTION,
+        /**
+         * The {@link Configuration#transientResetter()} and its detector applied to a state.
+         */
+        CLEANING,
+        /**
+         * The {@link Configuration#stateFilter()} comparing two states.
+         */
+        FILTERING,
+        /**
+         * The {@link Storage} loading or saving a state.
+         */
+        STORAGE,
+        /**
+         * The {@link StateConverter} converting a state to a model.
+         */
+        CONVERSION,
+        /**
+         * All the observers of the run handling a model.
+         */
+        EMISSION
+    }
+}
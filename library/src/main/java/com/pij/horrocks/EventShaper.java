@@ -0,0 +1,31 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import io.reactivex.Observable;
+
+/**
+ * Filters or combines the events of a {@link ShapedReducerCreator} before they reach its creator, so the events
+ * that would not change the state do not cost a reduction. {@link EventShapers} provides the usual ones.
+ *
+ * @author PierreJean
+ */
+public interface EventShaper<E> {
+
+    @NonNull
+    Observable<E> shape(@NonNull Observable<E> events);
+}
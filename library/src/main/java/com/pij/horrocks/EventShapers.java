@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * The usual {@link EventShaper}s. Those based on time take the scheduler that measures it, e.g.
+ * {@link io.reactivex.schedulers.Schedulers#computation()}, or a {@link io.reactivex.schedulers.TestScheduler} in
+ * tests. They emit the events on that scheduler.
+ *
+ * @author PierreJean
+ */
+public final class EventShapers {
+
+    private EventShapers() {
+    }
+
+    /**
+     * Only passes an event once no other event was received for <code>time</code>, e.g. for text typed.
+     */
+    @NonNull
+    public static <E> EventShaper<E> debounce(long time, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        return events -> events.debounce(time, unit, scheduler);
+    }
+
+    /**
+     * Passes an event, then ignores the following ones for <code>time</code>, e.g. for repeated taps.
+     */
+    @NonNull
+    public static <E> EventShaper<E> throttleFirst(long time, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        return events -> events.throttleFirst(time, unit, scheduler);
+    }
+
+    /**
+     * Passes the last event received in each period of <code>time</code>, e.g. for scroll positions.
+     */
+    @NonNull
+    public static <E> EventShaper<E> throttleLast(long time, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        return events -> events.throttleLast(time, unit, scheduler);
+    }
+
+    /**
+     * Ignores an event equal to the previous one.
+     */
+    @NonNull
+    public static <E> EventShaper<E> distinct() {
+        return Observable::distinctUntilChanged;
+    }
+
+    /**
+     * Combines all the events received within <code>time</code> of the first one into a single event, e.g. to apply
+     * many selections at once.
+     */
+    @NonNull
+    public static <E> EventShaper<E> coalesce(long time, @NonNull TimeUnit unit, @NonNull Scheduler scheduler,
+                                              @NonNull Coalescer<E> coalescer) {
+        return events -> events.publish(shared -> shared.buffer(
+                shared.throttleFirst(time, unit, scheduler).delay(time, unit, scheduler)))
+                .filter(window -> !window.isEmpty())
+                .map(window -> coalesce(window, coalescer));
+    }
+
+    @NonNull
+    private static <E> E coalesce(@NonNull List<E> window, @NonNull Coalescer<E> coalescer) {
+        E result = window.get(0);
+        for (int i = 1; i < window.size(); i++) {
+            result = coalescer.coalesce(result, window.get(i));
+        }
+        return result;
+    }
+
+    public interface Coalescer<E> {
+        @NonNull
+        E coalesce(@NonNull E earlier, @NonNull E later);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Persists the state in a file, so it survives the death of the process. Each state is written to a temporary file in
+ * the same directory, synced to the disk, then renamed over the previous one: the file always contains a complete
+ * state, even if the process dies while saving. The directory is not synced after the rename, which Java offers no
+ * portable way to do: after a power loss, the file may hold the previous state rather than the last one saved.
+ * <p>All I/O happens on the calling thread. Wrap it in a {@link WriteBehindStorage} to keep it off the reduction.</p>
+ *
+ * @author PierreJean
+ */
+public final class FileStorage<S> implements Storage<S> {
+
+    private final File file;
+    private final File temporaryFile;
+    private final StateSerializer<S> serializer;
+    private final S initialState;
+
+    /**
+     * @param initialState loaded as long as no state was ever saved to <code>file</code>.
+     */
+    public FileStorage(@NonNull File file, @NonNull StateSerializer<S> serializer, @NonNull S initialState) {
+        this.file = file;
+        this.temporaryFile = new File(file.getPath() + ".tmp");
+        this.serializer = serializer;
+        this.initialState = initialState;
+    }
+
+    /**
+     * @throws IllegalStateException if the file exists but cannot be read.
+     */
+    @NonNull
+    @Override
+    public S load() {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            return serializer.read(input);
+        } catch (FileNotFoundException e) {
+            return initialState;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load state from " + file, e);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the state cannot be written, in which case the file is left untouched.
+     */
+    @Override
+    public void save(@NonNull S state) {
+        try {
+            write(state);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temporaryFile.delete();
+            throw new IllegalStateException("Cannot save state to " + file, e);
+        }
+        if (!temporaryFile.renameTo(file)) {
+            throw new IllegalStateException("Cannot rename " + temporaryFile + " to " + file);
+        }
+    }
+
+    private void write(@NonNull S state) throws IOException {
+        try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile)) {
+            OutputStream output = new BufferedOutputStream(fileOutput);
+            serializer.write(state, output);
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+    }
+}
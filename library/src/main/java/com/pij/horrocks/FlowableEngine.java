@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import com.pij.utils.Logger;
+
+import org.reactivestreams.Subscription;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Flowable;
+import io.reactivex.functions.BiFunction;
+
+import static com.pij.horrocks.Configuration.Option.OVERFLOWS;
+
+/**
+ * The backpressure-aware counterpart of {@link DefaultEngine}. A state is only calculated when the view can accept
+ * the model it produces. Meanwhile, reducers wait in each creator's {@link Overflow} buffer, so memory stays bounded
+ * however slow the view is.
+ * <p>Reducer batching is not supported: {@link Configuration#batchingScheduler()} is ignored.</p>
+ *
+ * @author PierreJean
+ */
+public final class FlowableEngine<S, M> implements BackpressureEngine<S, M> {
+
+    private final LevelLogger logger;
+
+    /**
+     * Prints every state and model, see {@link #FlowableEngine(LevelLogger)} to restrict that.
+     */
+    public FlowableEngine(Logger logger) {
+        this(LevelLogger.verbose(logger));
+    }
+
+    public FlowableEngine(LevelLogger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public Flowable<M> runWith(Configuration<S, M> configuration) {
+        configuration.requireHonoured(this, OVERFLOWS);
+        Storage<S> storage = configuration.store();
+        Collection<ReducerCreator<S>> reducerCreators = configuration.creators();
+        TransientCleaner<S> transientCleaner = configuration.cleaner();
+        StateEquality<S> stateFilter = configuration.stateFilter();
+        StateConverter<S, M> stateConverter = configuration.stateToModel();
+        ErrorReducerFactory<S> errorReducerFactory = configuration.errorReducerFactory();
+        Callable<S> initialValue = () -> transientCleaner.clean(storage.load());
+        // Prefetching a single reducer per creator leaves the buffering to the creators' overflow strategy.
+        Flowable<Reducer<S>> reducers = Flowable.fromIterable(reducerCreators)
+                .flatMap(feature -> configuration.overflowOf(feature)
+                                .apply(configuration.reducersOf(feature, feature.reducers()
+                                                .doOnTerminate(() -> logger.print(LogLevel.WARN, getClass(), "ReducerCreator %d Unexpected completion!!!", feature.hashCode()))),
+                                        () -> logger.print(LogLevel.DEBUG, getClass(), "ReducerCreator %d Dropped a reducer", feature.hashCode()))
+                                // The overflow of a bounded buffer.
+                                .onErrorReturn(errorReducerFactory::create),
+                        false, Math.max(1, reducerCreators.size()), 1);
+        return scanWith(reducers, initialValue, transientCleaner)
+                .distinctUntilChanged(stateFilter::equal)
+                .doOnNext(this::logState)
+                .doOnNext(storage::save)
+                .map(stateConverter::convert)
+                .doOnNext(this::logModel)
+                .doOnError(this::logTerminalFailure)
+                .doOnComplete(this::logUnexpectedCompletion)
+                .doFinally(Storages.flushOf(storage))
+                .replay(1).refCount()
+                .doOnCancel(this::logDispose)
+                .doOnSubscribe(this::logSubscribe)
+                ;
+    }
+
+    /**
+     * Same as {@link Flowable#scanWith(Callable, BiFunction)}, without the prefetch of that operator: it would pull
+     * reducers ahead of the view's demand.
+     */
+    private static <S> Flowable<S> scanWith(Flowable<Reducer<S>> reducers, Callable<S> initialValue, TransientCleaner<S> transientCleaner) {
+        return Flowable.defer(() -> {
+            AtomicReference<S> state = new AtomicReference<>(initialValue.call());
+            return reducers
+                    .map(reducer -> {
+                        S next = Reductions.reduce(state.get(), reducer, transientCleaner);
+                        state.set(next);
+                        return next;
+                    })
+                    .startWith(state.get());
+        });
+    }
+
+    private void logSubscribe(@SuppressWarnings("unused") Subscription ignored) {
+        logger.print(LogLevel.DEBUG, getClass(), "Engine %d Start of this run", hashCode());
+    }
+
+    private void logDispose() {
+        logger.print(LogLevel.DEBUG, getClass(), "Engine %d End of this run", hashCode());
+    }
+
+    private void logUnexpectedCompletion() {
+        logger.print(LogLevel.WARN, getClass(), "Engine %d Unexpected completion!!!", hashCode());
+    }
+
+    private void logTerminalFailure(Throwable e) {
+        logger.print(LogLevel.ERROR, getClass(), e, "Engine %d Terminal failure!!! ", hashCode());
+    }
+
+    private void logModel(M it) {
+        logger.print(LogLevel.VERBOSE, getClass(), "Emitting %s", it);
+    }
+
+    private void logState(S it) {
+        logger.print(LogLevel.VERBOSE, getClass(), "Calculating %s", it);
+    }
+
+}
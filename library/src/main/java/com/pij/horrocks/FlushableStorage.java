@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import io.reactivex.Completable;
+
+/**
+ * A {@link Storage} that may hold states it has not persisted yet.
+ *
+ * @author PierreJean
+ */
+public interface FlushableStorage<S> extends Storage<S> {
+
+    /**
+     * Persists the pending state, if any, when subscribed to. It completes once the states saved before the
+     * subscription are persisted, and may block until then: engines subscribe to it on the I/O scheduler at the end of
+     * each run, and report its failure to {@link io.reactivex.plugins.RxJavaPlugins#onError}.
+     */
+    @NonNull
+    Completable flush();
+}
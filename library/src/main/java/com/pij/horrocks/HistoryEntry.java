@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * A state kept by a {@link StateHistory}, and the creator of the reducer that produced it.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class HistoryEntry<S> {
+
+    @NonNull
+    static <S> HistoryEntry<S> create(@Nullable ReducerCreator<S> origin, @NonNull S state) {
+        return new AutoValue_HistoryEntry<>(origin, state);
+    }
+
+    /**
+     * <code>null</code> for the state loaded at the start of a run.
+     */
+    @Nullable
+    public abstract ReducerCreator<S> origin();
+
+    @NonNull
+    public abstract S state();
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A session run by an {@link EngineHost}: the configuration of its engine, and whatever the application needs to
+ * trigger its creators, typically the {@link TriggeredReducerCreator}s of the configuration.
+ *
+ * @author PierreJean
+ */
+public interface HostedSession<S, M> {
+
+    /**
+     * Its storage should outlive the session, e.g. a {@link FileStorage} specific to the session: the host evicts
+     * idle sessions and creates them again when needed, from their storage.
+     */
+    @NonNull
+    Configuration<S, M> configuration();
+}
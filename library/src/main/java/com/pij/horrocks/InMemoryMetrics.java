@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the metrics of a run in memory: a count of reducers per creator, a {@link LatencyHistogram} per stage, the
+ * hit rate of the state filter, the number of interactions in flight and the models a {@link ConflatingEngine}
+ * conflated. Read them at any time, e.g. to log them periodically or when a screen is slow.
+ *
+ * @author PierreJean
+ */
+public final class InMemoryMetrics implements EngineMetrics {
+
+    private final ConcurrentMap<ReducerCreator<?>, AtomicLong> reducerCounts = new ConcurrentHashMap<>();
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final AtomicLong filtered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger interactionsInFlight = new AtomicInteger();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong lagging = new AtomicLong();
+
+    public InMemoryMetrics() {
+        // Filled once, then only read.
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public void reducerEmitted(@NonNull ReducerCreator<?> creator) {
+        AtomicLong count = reducerCounts.get(creator);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = reducerCounts.putIfAbsent(creator, created);
+            if (count == null) count = created;
+        }
+        count.incrementAndGet();
+    }
+
+    @Override
+    public void stageCompleted(@NonNull Stage stage, long nanos) {
+        histograms.get(stage).record(nanos);
+    }
+
+    @Override
+    public void stateFiltered(boolean dropped) {
+        filtered.incrementAndGet();
+        if (dropped) this.dropped.incrementAndGet();
+    }
+
+    @Override
+    public void interactionStarted() {
+        interactionsInFlight.incrementAndGet();
+    }
+
+    @Override
+    public void interactionCompleted() {
+        interactionsInFlight.decrementAndGet();
+    }
+
+    @Override
+    public void modelConflated() {
+        conflated.incrementAndGet();
+    }
+
+    @Override
+    public void subscriberLagging() {
+        lagging.incrementAndGet();
+    }
+
+    public long reducerCount(@NonNull ReducerCreator<?> creator) {
+        AtomicLong count = reducerCounts.get(creator);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * The durations of a stage, in nanoseconds.
+     */
+    @NonNull
+    public LatencyHistogram histogram(@NonNull Stage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * The proportion of states the state filter dropped, from 0 to 1. 0 if no state was filtered.
+     */
+    public double filterHitRate() {
+        long total = filtered.get();
+        return total == 0 ? 0 : (double) dropped.get() / total;
+    }
+
+    public int interactionsInFlight() {
+        return interactionsInFlight.get();
+    }
+
+    /**
+     * The number of models subscribers did not get because a newer one replaced them.
+     */
+    public long conflatedModels() {
+        return conflated.get();
+    }
+
+    /**
+     * The number of times a subscriber fell behind by more models than its threshold.
+     */
+    public long laggingSubscribers() {
+        return lagging.get();
+    }
+}
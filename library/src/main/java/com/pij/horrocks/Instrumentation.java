@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Observer;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Wraps the parts of a configuration so they report to its {@link EngineMetrics}. With {@link EngineMetrics#NONE},
+ * every part is returned as is, so an engine without metrics pays nothing.
+ *
+ * @author PierreJean
+ */
+final class Instrumentation {
+
+    private final EngineMetrics metrics;
+    private final boolean enabled;
+
+    Instrumentation(@NonNull EngineMetrics metrics) {
+        this.metrics = metrics;
+        enabled = metrics != EngineMetrics.NONE;
+    }
+
+    @NonNull
+    <S> Observable<Reducer<S>> reducersOf(@NonNull ReducerCreator<S> creator) {
+        if (!enabled) return creator.reducers();
+        return creator.reducers().map(reducer -> {
+            metrics.reducerEmitted(creator);
+            return state -> {
+                long start = System.nanoTime();
+                S result = reducer.reduce(state);
+                metrics.stageCompleted(EngineMetrics.Stage.REDUCTION, System.nanoTime() - start);
+                return result;
+            };
+        });
+    }
+
+    @NonNull
+    <S> TransientCleaner<S> cleaner(@NonNull TransientCleaner<S> cleaner) {
+        if (!enabled) return cleaner;
+        return state -> {
+            long start = System.nanoTime();
+            S result = cleaner.clean(state);
+            metrics.stageCompleted(EngineMetrics.Stage.CLEANING, System.nanoTime() - start);
+            return result;
+        };
+    }
+
+    @NonNull
+    <S> StateEquality<S> stateFilter(@NonNull StateEquality<S> stateFilter) {
+        if (!enabled) return stateFilter;
+        return (left, right) -> {
+            long start = System.nanoTime();
+            boolean result = stateFilter.equal(left, right);
+            metrics.stageCompleted(EngineMetrics.Stage.FILTERING, System.nanoTime() - start);
+            metrics.stateFiltered(result);
+            return result;
+        };
+    }
+
+    @NonNull
+    <S> Storage<S> storage(@NonNull Storage<S> storage) {
+        if (!enabled) return storage;
+        return new Storage<S>() {
+            @NonNull
+            @Override
+            public S load() {
+                long start = System.nanoTime();
+                S result = storage.load();
+                metrics.stageCompleted(EngineMetrics.Stage.STORAGE, System.nanoTime() - start);
+                return result;
+            }
+
+            @Override
+            public void save(@NonNull S state) {
+                long start = System.nanoTime();
+                storage.save(state);
+                metrics.stageCompleted(EngineMetrics.Stage.STORAGE, System.nanoTime() - start);
+            }
+        };
+    }
+
+    @NonNull
+    <S, M> StateConverter<S, M> converter(@NonNull StateConverter<S, M> converter) {
+        if (!enabled) return converter;
+        return state -> {
+            long start = System.nanoTime();
+            M result = converter.convert(state);
+            metrics.stageCompleted(EngineMetrics.Stage.CONVERSION, System.nanoTime() - start);
+            return result;
+        };
+    }
+
+    /**
+     * Times the observers' handling of each item.
+     */
+    @NonNull
+    <T> ObservableTransformer<T, T> emission() {
+        if (!enabled) return upstream -> upstream;
+        return upstream -> upstream.lift(downstream -> new EmissionObserver<>(downstream, metrics));
+    }
+
+    private static final class EmissionObserver<T> implements Observer<T> {
+
+        private final Observer<? super T> downstream;
+        private final EngineMetrics metrics;
+
+        EmissionObserver(Observer<? super T> downstream, EngineMetrics metrics) {
+            this.downstream = downstream;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            downstream.onSubscribe(d);
+        }
+
+        @Override
+        public void onNext(T item) {
+            long start = System.nanoTime();
+            downstream.onNext(item);
+            metrics.stageCompleted(EngineMetrics.Stage.EMISSION, System.nanoTime() - start);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            downstream.onError(e);
+        }
+
+        @Override
+        public void onComplete() {
+            downstream.onComplete();
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import io.reactivex.Completable;
+
+/**
+ * Persists the state as a snapshot followed by a journal of deltas, so saving a state costs the size of its change
+ * rather than the size of the state. Each save appends the {@link DeltaCodec delta} from the previous state to a
+ * memory-mapped journal file. Every <code>snapshotInterval</code> saves, or when the journal is full, the whole state
+ * is written to a snapshot file, atomically as a {@link FileStorage} does, and a new journal is started.
+ * <p>Loading reads the snapshot and applies the deltas of its journal. Each record of the journal carries a checksum:
+ * a record torn by the death of the process or of the device ends the journal, so the state loaded is the last one
+ * completely saved. The journal is in memory shared with the OS, so the death of the process does not lose it;
+ * subscribe to {@link #flush()} to force it to the disk. Engines do that on the I/O scheduler at the end of each
+ * run.</p>
+ * <p>All I/O happens on the calling thread, or the subscribing one for {@link #flush()}, and saves are kept in memory
+ * until the next load: a load only reads the files the first time.</p>
+ *
+ * @author PierreJean
+ */
+public final class JournalStorage<S> implements FlushableStorage<S> {
+
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+    private static final int DEFAULT_JOURNAL_SIZE = 1024 * 1024;
+    /**
+     * A record's length and checksum.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final File directory;
+    private final FileStorage<Snapshot<S>> snapshots;
+    private final DeltaCodec<S> codec;
+    private final int snapshotInterval;
+    private final int journalSize;
+    private final CRC32 checksum = new CRC32();
+    @Nullable
+    private S state;
+    private long generation;
+    private int recordCount;
+    private MappedByteBuffer journal;
+
+    /**
+     * Takes a snapshot every 1000 saves, with a journal of 1MB.
+     *
+     * @param initialState loaded as long as no state was ever saved to <code>directory</code>.
+     */
+    public JournalStorage(@NonNull File directory, @NonNull StateSerializer<S> serializer,
+                          @NonNull DeltaCodec<S> codec, @NonNull S initialState) {
+        this(directory, serializer, codec, initialState, DEFAULT_SNAPSHOT_INTERVAL, DEFAULT_JOURNAL_SIZE);
+    }
+
+    /**
+     * @param snapshotInterval the number of deltas after which the whole state is saved.
+     * @param journalSize      the size of the journal file, in bytes. A delta that does not fit causes a snapshot.
+     */
+    public JournalStorage(@NonNull File directory, @NonNull StateSerializer<S> serializer,
+                          @NonNull DeltaCodec<S> codec, @NonNull S initialState,
+                          int snapshotInterval, int journalSize) {
+        this.directory = directory;
+        this.snapshots = new FileStorage<>(new File(directory, "snapshot"), new SnapshotSerializer<>(serializer),
+                new Snapshot<>(0, initialState));
+        this.codec = codec;
+        this.snapshotInterval = snapshotInterval;
+        this.journalSize = journalSize;
+    }
+
+    /**
+     * @throws IllegalStateException if the files exist but cannot be read.
+     */
+    @NonNull
+    @Override
+    public synchronized S load() {
+        return open();
+    }
+
+    /**
+     * @throws IllegalStateException if the state cannot be written.
+     */
+    @Override
+    public synchronized void save(@NonNull S state) {
+        S previous = open();
+        if (state == previous) return;
+        if (recordCount < snapshotInterval) {
+            byte[] delta = codec.encode(previous, state);
+            if (delta.length + RECORD_HEADER_SIZE < journal.remaining()) {
+                append(delta);
+                this.state = state;
+                return;
+            }
+        }
+        snapshot(state);
+    }
+
+    /**
+     * Forces the journal to the disk when subscribed to, blocking the subscribing thread until it is written.
+     */
+    @NonNull
+    @Override
+    public Completable flush() {
+        return Completable.fromAction(this::force);
+    }
+
+    private synchronized void force() {
+        if (journal != null) journal.force();
+    }
+
+    @NonNull
+    private S open() {
+        if (state != null) return state;
+        Snapshot<S> snapshot = snapshots.load();
+        generation = snapshot.generation;
+        S result = snapshot.state;
+        File journalFile = journalFile(generation);
+        boolean existed = journalFile.exists();
+        journal = map(journalFile);
+        if (existed) {
+            result = replay(result);
+        }
+        state = result;
+        return result;
+    }
+
+    /**
+     * Applies the valid records of the journal, and leaves it positioned after them.
+     */
+    @NonNull
+    private S replay(@NonNull S snapshot) {
+        S result = snapshot;
+        while (journal.remaining() > RECORD_HEADER_SIZE) {
+            int start = journal.position();
+            int length = journal.getInt();
+            int expectedChecksum = journal.getInt();
+            if (length <= 0 || length > journal.remaining()) {
+                journal.position(start);
+                break;
+            }
+            byte[] delta = new byte[length];
+            journal.get(delta);
+            if (checksumOf(delta) != expectedChecksum) {
+                journal.position(start);
+                break;
+            }
+            result = codec.apply(result, delta);
+            recordCount++;
+        }
+        return result;
+    }
+
+    /**
+     * The length is written last: until it is, the record reads as the end of the journal.
+     */
+    private void append(@NonNull byte[] delta) {
+        int start = journal.position();
+        journal.putInt(start + 4, checksumOf(delta));
+        journal.position(start + RECORD_HEADER_SIZE);
+        journal.put(delta);
+        // Marks the end of the journal, in case a previous, longer, journal left bytes here.
+        if (journal.remaining() >= 4) journal.putInt(journal.position(), 0);
+        journal.putInt(start, delta.length);
+        recordCount++;
+    }
+
+    /**
+     * The new snapshot replaces the previous one atomically, so the new journal only becomes the journal of the
+     * current snapshot once the snapshot is written.
+     */
+    private void snapshot(@NonNull S state) {
+        long next = generation + 1;
+        File journalFile = journalFile(next);
+        //noinspection ResultOfMethodCallIgnored
+        journalFile.delete();
+        snapshots.save(new Snapshot<>(next, state));
+        MappedByteBuffer nextJournal = map(journalFile);
+        File previousJournal = journalFile(generation);
+        //noinspection ResultOfMethodCallIgnored
+        previousJournal.delete();
+        journal = nextJournal;
+        generation = next;
+        recordCount = 0;
+        this.state = state;
+    }
+
+    @NonNull
+    private MappedByteBuffer map(@NonNull File file) {
+        try (RandomAccessFile journalFile = new RandomAccessFile(file, "rw")) {
+            // The mapping stays valid once the file is closed.
+            return journalFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, journalSize);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map journal " + file, e);
+        }
+    }
+
+    @NonNull
+    private File journalFile(long generation) {
+        return new File(directory, "journal-" + generation);
+    }
+
+    private int checksumOf(@NonNull byte[] delta) {
+        checksum.reset();
+        checksum.update(delta, 0, delta.length);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * A state and the generation of the journal that follows it.
+     */
+    private static final class Snapshot<S> {
+        final long generation;
+        final S state;
+
+        Snapshot(long generation, S state) {
+            this.generation = generation;
+            this.state = state;
+        }
+    }
+
+    private static final class SnapshotSerializer<S> implements StateSerializer<Snapshot<S>> {
+
+        private final StateSerializer<S> serializer;
+
+        SnapshotSerializer(StateSerializer<S> serializer) {
+            this.serializer = serializer;
+        }
+
+        @Override
+        public void write(@NonNull Snapshot<S> snapshot, @NonNull OutputStream output) throws IOException {
+            DataOutputStream data = new DataOutputStream(output);
+            data.writeLong(snapshot.generation);
+            data.flush();
+            serializer.write(snapshot.state, output);
+        }
+
+        @NonNull
+        @Override
+        public Snapshot<S> read(@NonNull InputStream input) throws IOException {
+            long generation = new DataInputStream(input).readLong();
+            return new Snapshot<>(generation, serializer.read(input));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+/**
+ * Told when a subscriber of a {@link ConflatingEngine} falls behind, and when it catches up. Subscribers are told
+ * apart by their number, given in the order they subscribed to the engine. Calls should return quickly, e.g. log or
+ * count, rather than wait for the subscriber.
+ *
+ * @author PierreJean
+ */
+public interface LagListener {
+
+    /**
+     * Called once the subscriber has missed more models in a row than the threshold, on the thread emitting the
+     * models, and not again until it has caught up.
+     *
+     * @param missed how many models the subscriber missed so far, i.e. the threshold plus one.
+     */
+    void lagging(int subscriber, int missed);
+
+    /**
+     * Called when a lagging subscriber gets a model, on its worker, before it gets the model.
+     *
+     * @param missed how many models the subscriber missed in a row, in total.
+     */
+    void caughtUp(int subscriber, int missed);
+}
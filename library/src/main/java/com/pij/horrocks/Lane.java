@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * The priority of the reducers of a {@link ReducerCreator}, for an {@link MpscEngine}. The engine applies the
+ * reducers queued in the lanes of the highest priority first, so a creator flooding a low priority lane, e.g. with
+ * progress reports, does not delay the reducers of a higher priority, e.g. those of the user's actions. Within a lane,
+ * the engine takes up to <code>quota</code> reducers from each creator in turn.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class Lane {
+
+    /**
+     * The lane of the creators without a lane of their own. They share a single queue, so their reducers are applied
+     * in the order they were emitted.
+     */
+    @NonNull
+    public static Lane normal() {
+        return of(0, 1);
+    }
+
+    /**
+     * @param priority the higher, the sooner. {@link #normal()} has priority 0.
+     * @param quota    the number of reducers taken from the creator before taking those of the next creator in the
+     *                 lane.
+     */
+    @NonNull
+    public static Lane of(int priority, int quota) {
+        if (quota <= 0) throw new IllegalArgumentException("quota must be strictly positive: " + quota);
+        return new AutoValue_Lane(priority, quota);
+    }
+
+    public abstract int priority();
+
+    public abstract int quota();
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A queue per source, grouped into {@link Lane}s. Polling takes from the lane of the highest priority that has items,
+ * and within it from each source in turn, up to its quota. The sources without a lane share a single queue in the
+ * {@link Lane#normal()} lane. Like {@link MpscQueue}, offering is lock-free and polling must be done by one thread at a
+ * time.
+ *
+ * @author PierreJean
+ */
+final class LaneQueue<K, T> {
+
+    private final Map<K, MpscQueue<T>> queues = new IdentityHashMap<>();
+    /**
+     * The highest priority first.
+     */
+    private final LaneState<T>[] lanes;
+
+    LaneQueue(@NonNull Collection<K> sources, @NonNull Map<K, Lane> lanesOfSources) {
+        Map<Integer, LaneState<T>> byPriority = new TreeMap<>(Collections.reverseOrder());
+        MpscQueue<T> normalQueue = null;
+        for (K source : sources) {
+            Lane lane = lanesOfSources.get(source);
+            MpscQueue<T> queue;
+            if (lane == null) {
+                lane = Lane.normal();
+                if (normalQueue == null) {
+                    normalQueue = new MpscQueue<>();
+                    laneOf(byPriority, lane).add(normalQueue, lane.quota());
+                }
+                queue = normalQueue;
+            } else {
+                queue = new MpscQueue<>();
+                laneOf(byPriority, lane).add(queue, lane.quota());
+            }
+            queues.put(source, queue);
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        LaneState<T>[] sorted = byPriority.values().toArray(new LaneState[0]);
+        lanes = sorted;
+    }
+
+    private static <T> LaneState<T> laneOf(Map<Integer, LaneState<T>> byPriority, Lane lane) {
+        LaneState<T> result = byPriority.get(lane.priority());
+        if (result == null) {
+            result = new LaneState<>();
+            byPriority.put(lane.priority(), result);
+        }
+        return result;
+    }
+
+    /**
+     * The queue to offer the items of <code>source</code> to.
+     */
+    @NonNull
+    MpscQueue<T> queueOf(@NonNull K source) {
+        MpscQueue<T> result = queues.get(source);
+        if (result == null) throw new IllegalArgumentException("Unknown source " + source);
+        return result;
+    }
+
+    /**
+     * @return <code>null</code> if all queues are empty.
+     */
+    @Nullable
+    T poll() {
+        for (LaneState<T> lane : lanes) {
+            T result = lane.poll();
+            if (result != null) return result;
+        }
+        return null;
+    }
+
+    void clear() {
+        for (LaneState<T> lane : lanes) {
+            lane.clear();
+        }
+    }
+
+    /**
+     * The queues of a lane, and where the round-robin is at. Only accessed by the polling thread.
+     */
+    private static final class LaneState<T> {
+
+        private final List<MpscQueue<T>> queues = new ArrayList<>();
+        private final List<Integer> quotas = new ArrayList<>();
+        private int current;
+        private int taken;
+
+        void add(MpscQueue<T> queue, int quota) {
+            queues.add(queue);
+            quotas.add(quota);
+        }
+
+        @Nullable
+        T poll() {
+            int size = queues.size();
+            // One more try than queues, so the current queue gets a new quota if it is the only one with items.
+            for (int tries = 0; tries <= size; tries++) {
+                if (taken < quotas.get(current)) {
+                    T result = queues.get(current).poll();
+                    if (result != null) {
+                        taken++;
+                        return result;
+                    }
+                }
+                current = (current + 1) % size;
+                taken = 0;
+            }
+            return null;
+        }
+
+        void clear() {
+            for (MpscQueue<T> queue : queues) {
+                queue.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of positive values, e.g. durations in nanoseconds, in the manner of an HDR histogram: values
+ * are counted in buckets whose width grows with the values, so that any value from 0 to {@link Long#MAX_VALUE} is
+ * recorded with a relative precision of 1/32, in constant time and memory, without allocating.
+ *
+ * @author PierreJean
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    /**
+     * The values below {@link #SUB_BUCKET_COUNT} have their own bucket, then each power of 2 has
+     * {@link #SUB_BUCKET_COUNT} buckets.
+     */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        long recorded = Math.max(value, 0);
+        counts.incrementAndGet(indexOf(recorded));
+        count.incrementAndGet();
+        long currentMax;
+        while (recorded > (currentMax = max.get()) && !max.compareAndSet(currentMax, recorded)) {
+            // Another thread updated the max meanwhile.
+        }
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * The exact highest value recorded, 0 if none was.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * The value below or at which <code>percentile</code> percents of the recorded values are, rounded down to the
+     * bucket of that value, e.g. <code>valueAtPercentile(99)</code>. 0 if no value was recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(valueOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets all recorded values. Values recorded while resetting may be partly forgotten.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + count() + ", p50=" + valueAtPercentile(50) + ", p99="
+                + valueAtPercentile(99) + ", max=" + max() + "}";
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & SUB_BUCKET_MASK;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * The lowest value of a bucket.
+     */
+    static long valueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        return (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import com.pij.utils.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filters the messages sent to a {@link Logger} by {@link LogLevel}. Messages below the threshold cost nothing: the
+ * methods have fixed arities, so no argument array is allocated, primitives are not boxed, and arguments are only
+ * formatted by the logger once the message is known to be printed. Arguments that are expensive to calculate can be
+ * passed as an {@link Argument}, only evaluated when the message is printed.
+ * <p>Messages below {@link LogLevel#INFO} may also be sampled, i.e. only one every few messages is printed. This
+ * keeps the per-event diagnostics readable, and cheap, when the events are frequent.</p>
+ *
+ * @author PierreJean
+ */
+public final class LevelLogger {
+
+    /**
+     * Prints nothing.
+     */
+    public static final LevelLogger OFF = new LevelLogger(Logger.NOOP, LogLevel.OFF, 1);
+
+    private final Logger logger;
+    private final LogLevel threshold;
+    private final int samplingRate;
+    private final AtomicInteger sampled = new AtomicInteger();
+
+    private LevelLogger(@NonNull Logger logger, @NonNull LogLevel threshold, int samplingRate) {
+        this.logger = logger;
+        this.threshold = threshold;
+        this.samplingRate = samplingRate;
+    }
+
+    /**
+     * Prints the messages of level <code>threshold</code> and above.
+     */
+    @NonNull
+    public static LevelLogger create(@NonNull Logger logger, @NonNull LogLevel threshold) {
+        return new LevelLogger(logger, threshold, 1);
+    }
+
+    /**
+     * Prints all messages, like the plain logger would.
+     */
+    @NonNull
+    public static LevelLogger verbose(@NonNull Logger logger) {
+        return create(logger, LogLevel.VERBOSE);
+    }
+
+    /**
+     * A copy of this logger that only prints one in <code>rate</code> messages below {@link LogLevel#INFO}.
+     */
+    @NonNull
+    public LevelLogger sampled(int rate) {
+        if (rate < 1) throw new IllegalArgumentException("Sampling rate must be positive: " + rate);
+        return new LevelLogger(logger, threshold, rate);
+    }
+
+    public boolean isLoggable(@NonNull LogLevel level) {
+        return level.compareTo(threshold) >= 0 && threshold != LogLevel.OFF;
+    }
+
+    public void print(@NonNull LogLevel level, Class<?> javaClass, String formatMessage) {
+        if (shouldPrint(level)) {
+            logger.print(javaClass, formatMessage);
+        }
+    }
+
+    public void print(@NonNull LogLevel level, Class<?> javaClass, String formatMessage, int arg) {
+        if (shouldPrint(level)) {
+            logger.print(javaClass, formatMessage, arg);
+        }
+    }
+
+    public void print(@NonNull LogLevel level, Class<?> javaClass, String formatMessage, Object arg) {
+        if (shouldPrint(level)) {
+            logger.print(javaClass, formatMessage, arg);
+        }
+    }
+
+    public void print(@NonNull LogLevel level, Class<?> javaClass, String formatMessage, Object arg1, Object arg2) {
+        if (shouldPrint(level)) {
+            logger.print(javaClass, formatMessage, arg1, arg2);
+        }
+    }
+
+    public void print(@NonNull LogLevel level, Class<?> javaClass, String formatMessage, @NonNull Argument arg) {
+        if (shouldPrint(level)) {
+            logger.print(javaClass, formatMessage, arg.evaluate());
+        }
+    }
+
+    public void print(@NonNull LogLevel level, Class<?> javaClass, Throwable error, String formatMessage, int arg) {
+        if (shouldPrint(level)) {
+            logger.print(javaClass, error, formatMessage, arg);
+        }
+    }
+
+    private boolean shouldPrint(LogLevel level) {
+        if (!isLoggable(level)) return false;
+        return samplingRate == 1
+                || level.compareTo(LogLevel.INFO) >= 0
+                || (sampled.getAndIncrement() & Integer.MAX_VALUE) % samplingRate == 0;
+    }
+
+    /**
+     * A message argument calculated only when the message is printed.
+     */
+    public interface Argument {
+        Object evaluate();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calculates the {@link ListPatch} between two lists with Myers' O((N+M)D) algorithm, D being the number of items
+ * inserted or removed. The common prefix and suffix are skipped first, so an update of a few items of a large list
+ * only diffs the part that changed.
+ *
+ * @author PierreJean
+ */
+final class ListDiff {
+
+    /**
+     * Beyond this many insertions and removals the lists are deemed unrelated, and the patch replaces all items. This
+     * bounds the memory of the algorithm, quadratic in D.
+     */
+    static final int MAX_EDITS = 1000;
+
+    private ListDiff() {
+    }
+
+    @NonNull
+    static ListPatch between(@NonNull List<?> previous, @NonNull List<?> current) {
+        if (previous == current) return ListPatch.none();
+        if (previous instanceof PersistentVector && current instanceof PersistentVector
+                && ((PersistentVector<?>) previous).sharesStructureWith((PersistentVector<?>) current)) {
+            return ListPatch.none();
+        }
+        int start = 0;
+        int previousEnd = previous.size();
+        int currentEnd = current.size();
+        while (start < previousEnd && start < currentEnd && equal(previous.get(start), current.get(start))) {
+            start++;
+        }
+        while (previousEnd > start && currentEnd > start && equal(previous.get(previousEnd - 1), current.get(currentEnd - 1))) {
+            previousEnd--;
+            currentEnd--;
+        }
+        return new Myers(previous.subList(start, previousEnd), current.subList(start, currentEnd), start).patch();
+    }
+
+    private static boolean equal(Object left, Object right) {
+        return left == null ? right == null : left.equals(right);
+    }
+
+    private static final class Myers {
+
+        private final List<?> previous;
+        private final List<?> current;
+        private final int offset;
+        private final List<ListPatch.Operation> operations = new ArrayList<>();
+
+        Myers(List<?> previous, List<?> current, int offset) {
+            this.previous = previous;
+            this.current = current;
+            this.offset = offset;
+        }
+
+        ListPatch patch() {
+            int n = previous.size();
+            int m = current.size();
+            // The difference of sizes alone is a lower bound of the number of edits.
+            if (n == 0 || m == 0 || Math.abs(n - m) > MAX_EDITS) {
+                replaceAll(n, m);
+                return ListPatch.of(operations);
+            }
+            List<int[]> trace = new ArrayList<>();
+            if (forward(n, m, trace)) {
+                backtrack(n, m, trace);
+            } else {
+                replaceAll(n, m);
+            }
+            return ListPatch.of(operations);
+        }
+
+        /**
+         * Explores the edit graph, keeping a snapshot of the furthest reaching paths before each step.
+         *
+         * @return false if more than {@link #MAX_EDITS} edits are needed.
+         */
+        private boolean forward(int n, int m, List<int[]> trace) {
+            int max = Math.min(n + m, MAX_EDITS);
+            int center = max + 1;
+            int[] v = new int[2 * max + 3];
+            for (int d = 0; d <= max; d++) {
+                trace.add(Arrays.copyOfRange(v, center - d - 1, center + d + 2));
+                for (int k = -d; k <= d; k += 2) {
+                    int x = k == -d || (k != d && v[center + k - 1] < v[center + k + 1])
+                            ? v[center + k + 1]
+                            : v[center + k - 1] + 1;
+                    int y = x - k;
+                    while (x < n && y < m && equal(previous.get(x), current.get(y))) {
+                        x++;
+                        y++;
+                    }
+                    v[center + k] = x;
+                    if (x >= n && y >= m) return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Walks the snapshots back from the end, then emits the operations from the start.
+         */
+        private void backtrack(int n, int m, List<int[]> trace) {
+            List<int[]> edits = new ArrayList<>();
+            int x = n;
+            int y = m;
+            for (int d = trace.size() - 1; d > 0; d--) {
+                int[] v = trace.get(d);
+                int base = d + 1;
+                int k = x - y;
+                int previousK = k == -d || (k != d && v[base + k - 1] < v[base + k + 1]) ? k + 1 : k - 1;
+                int previousX = v[base + previousK];
+                int previousY = previousX - previousK;
+                while (x > previousX && y > previousY) {
+                    x--;
+                    y--;
+                }
+                // From (previousX, previousY) to (x, y): an insertion if x did not move, a removal otherwise.
+                edits.add(new int[]{previousX == x ? 1 : 0, previousY});
+                x = previousX;
+                y = previousY;
+            }
+            for (int i = edits.size() - 1; i >= 0; i--) {
+                int[] edit = edits.get(i);
+                add(edit[0] == 1 ? ListPatch.Type.INSERT : ListPatch.Type.REMOVE, edit[1]);
+            }
+        }
+
+        private void replaceAll(int n, int m) {
+            if (n > 0) operations.add(ListPatch.Operation.create(ListPatch.Type.REMOVE, offset, n));
+            if (m > 0) operations.add(ListPatch.Operation.create(ListPatch.Type.INSERT, offset, m));
+        }
+
+        /**
+         * Merges consecutive operations of the same type. In the list being patched, an item is inserted or removed at
+         * the position of the current list's index, since everything before it already matches the current list.
+         */
+        private void add(ListPatch.Type type, int currentIndex) {
+            int position = offset + currentIndex;
+            int last = operations.size() - 1;
+            if (last >= 0) {
+                ListPatch.Operation previousOperation = operations.get(last);
+                if (previousOperation.type() == type) {
+                    boolean contiguous = type == ListPatch.Type.REMOVE
+                            ? previousOperation.position() == position
+                            : previousOperation.position() + previousOperation.count() == position;
+                    if (contiguous) {
+                        operations.set(last, ListPatch.Operation.create(type, previousOperation.position(), previousOperation.count() + 1));
+                        return;
+                    }
+                }
+            }
+            operations.add(ListPatch.Operation.create(type, position, 1));
+        }
+    }
+}
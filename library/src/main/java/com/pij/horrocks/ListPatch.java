@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The operations that turn a list into another one. Applied in order, each operation's position is relative to the
+ * list as modified by the previous operations, as expected by Android's <code>ListUpdateCallback</code> and
+ * <code>RecyclerView.Adapter.notifyItemRange*()</code>.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class ListPatch {
+
+    private static final ListPatch NONE = new AutoValue_ListPatch(Collections.emptyList());
+
+    @NonNull
+    static ListPatch none() {
+        return NONE;
+    }
+
+    @NonNull
+    static ListPatch of(@NonNull List<Operation> operations) {
+        return operations.isEmpty() ? NONE : new AutoValue_ListPatch(Collections.unmodifiableList(operations));
+    }
+
+    @NonNull
+    public abstract List<Operation> operations();
+
+    public boolean isEmpty() {
+        return operations().isEmpty();
+    }
+
+    public void dispatchTo(@NonNull Callback callback) {
+        for (Operation operation : operations()) {
+            switch (operation.type()) {
+                case INSERT:
+                    callback.onInserted(operation.position(), operation.count());
+                    break;
+                case REMOVE:
+                    callback.onRemoved(operation.position(), operation.count());
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported operation " + operation.type());
+            }
+        }
+    }
+
+    public enum Type {INSERT, REMOVE}
+
+    /**
+     * Receives the operations of a patch, typically to forward them to a list adapter.
+     */
+    public interface Callback {
+
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+    }
+
+    @AutoValue
+    public abstract static class Operation {
+
+        @NonNull
+        static Operation create(@NonNull Type type, int position, int count) {
+            return new AutoValue_ListPatch_Operation(type, position, count);
+        }
+
+        @NonNull
+        public abstract Type type();
+
+        public abstract int position();
+
+        public abstract int count();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+/**
+ * The importance of a message printed by a {@link LevelLogger}, from the most verbose to the most important.
+ *
+ * @author PierreJean
+ */
+public enum LogLevel {
+    /**
+     * Every event, reducer, state and model. Only useful while debugging a feature.
+     */
+    VERBOSE,
+    /**
+     * The life-cycle of engines and creators.
+     */
+    DEBUG,
+    INFO,
+    /**
+     * Something unexpected the engine recovered from.
+     */
+    WARN,
+    /**
+     * A failure the engine could not recover from.
+     */
+    ERROR,
+    /**
+     * Used as a threshold, disables all messages.
+     */
+    OFF
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.pij.utils.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+
+import static com.pij.horrocks.Configuration.Option.BATCHING_SCHEDULER;
+import static com.pij.horrocks.Configuration.Option.LANES;
+
+/**
+ * An engine with the same behaviour as {@link DefaultEngine} but a different core: rather than merging the creators'
+ * streams with Rx, every creator enqueues its reducers into a single lock-free {@link MpscQueue}. Whichever thread
+ * finds the queue idle becomes the only one draining it, until it is empty. Emitting a reducer never blocks, so this
+ * scales better with many creators emitting from many threads.
+ * <p>When {@link Configuration#batchingScheduler()} is set, the queue is drained on that scheduler and each drain pass
+ * produces a single state.</p>
+ * <p>Creators given a {@link Lane} in {@link Configuration#lanes()} get a queue of their own, drained by priority.</p>
+ *
+ * @author PierreJean
+ */
+public final class MpscEngine<S, M> implements Engine<S, M> {
+
+    private final LevelLogger logger;
+
+    /**
+     * Prints every state and model, see {@link #MpscEngine(LevelLogger)} to restrict that.
+     */
+    public MpscEngine(Logger logger) {
+        this(LevelLogger.verbose(logger));
+    }
+
+    public MpscEngine(LevelLogger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public Observable<M> runWith(Configuration<S, M> configuration) {
+        configuration.requireHonoured(this, BATCHING_SCHEDULER, LANES);
+        return Observable.<M>create(emitter -> new ReductionLoop<>(configuration, emitter, logger).start())
+                .doOnError(this::logTerminalFailure)
+                .doOnComplete(this::logUnexpectedCompletion)
+                .doFinally(Storages.flushOf(configuration.store()))
+                .replay(1).refCount()
+                .doOnDispose(this::logDispose)
+                .doOnSubscribe(this::logSubscribe)
+                ;
+    }
+
+    private void logSubscribe(@SuppressWarnings("unused") Disposable ignored) {
+        logger.print(LogLevel.DEBUG, getClass(), "Engine %d Start of this run", hashCode());
+    }
+
+    private void logDispose() {
+        logger.print(LogLevel.DEBUG, getClass(), "Engine %d End of this run", hashCode());
+    }
+
+    private void logUnexpectedCompletion() {
+        logger.print(LogLevel.WARN, getClass(), "Engine %d Unexpected completion!!!", hashCode());
+    }
+
+    private void logTerminalFailure(Throwable e) {
+        logger.print(LogLevel.ERROR, getClass(), e, "Engine %d Terminal failure!!! ", hashCode());
+    }
+
+    /**
+     * The state of one run. The work-in-progress counter it extends elects the thread draining the queue.
+     */
+    private static final class ReductionLoop<S, M> extends AtomicInteger {
+
+        private final LaneQueue<ReducerCreator<S>, Reducer<S>> queue;
+        private final CompositeDisposable subscriptions = new CompositeDisposable();
+        private final Configuration<S, M> configuration;
+        private final ObservableEmitter<M> emitter;
+        private final LevelLogger logger;
+        private final TransientCleaner<S> transientCleaner;
+        @Nullable
+        private final Scheduler.Worker worker;
+        /**
+         * Only accessed while draining.
+         */
+        private S state;
+
+        ReductionLoop(Configuration<S, M> configuration, ObservableEmitter<M> emitter, LevelLogger logger) {
+            this.configuration = configuration;
+            this.emitter = emitter;
+            this.logger = logger;
+            transientCleaner = configuration.cleaner();
+            queue = new LaneQueue<>(configuration.creators(), configuration.lanes());
+            Scheduler batchingScheduler = configuration.batchingScheduler();
+            worker = batchingScheduler == null ? null : batchingScheduler.createWorker();
+            if (worker != null) subscriptions.add(worker);
+        }
+
+        void start() {
+            emitter.setDisposable(subscriptions);
+            getAndIncrement();
+            try {
+                state = transientCleaner.clean(configuration.store().load());
+                publish(state);
+            } catch (Throwable e) {
+                fail(e);
+                return;
+            }
+            for (ReducerCreator<S> feature : configuration.creators()) {
+                MpscQueue<Reducer<S>> featureQueue = queue.queueOf(feature);
+                subscriptions.add(configuration.reducersOf(feature, feature.reducers()
+                        .doOnTerminate(() -> logger.print(LogLevel.WARN, MpscEngine.class, "ReducerCreator %d Unexpected completion!!!", feature.hashCode())))
+                        .subscribe(reducer -> offer(featureQueue, reducer)));
+            }
+            // Drains what was emitted while the creators were subscribed.
+            if (decrementAndGet() != 0) {
+                schedule();
+            }
+        }
+
+        private void offer(@NonNull MpscQueue<Reducer<S>> featureQueue, @NonNull Reducer<S> reducer) {
+            featureQueue.offer(reducer);
+            if (getAndIncrement() == 0) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (worker == null) {
+                drain();
+            } else {
+                worker.schedule(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            try {
+                for (; ; ) {
+                    if (emitter.isDisposed()) {
+                        queue.clear();
+                        return;
+                    }
+                    if (worker == null) {
+                        reduceOneByOne();
+                    } else {
+                        reduceAll();
+                    }
+                    missed = addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void reduceOneByOne() {
+            Reducer<S> reducer;
+            while ((reducer = queue.poll()) != null && !emitter.isDisposed()) {
+                emit(Reductions.reduce(state, reducer, transientCleaner));
+            }
+        }
+
+        private void reduceAll() {
+            Reducer<S> reducer = queue.poll();
+            if (reducer != null) {
+                S result = transientCleaner.clean(state);
+                do {
+                    result = reducer.reduce(result);
+                } while ((reducer = queue.poll()) != null);
+                emit(result);
+            }
+        }
+
+        /**
+         * Applies the state filter, so a state is only published if it is deemed different from the previous one.
+         */
+        private void emit(@NonNull S next) {
+            S previous = state;
+            state = next;
+            if (!configuration.stateFilter().equal(previous, next)) {
+                publish(next);
+            }
+        }
+
+        private void publish(@NonNull S next) {
+            logger.print(LogLevel.VERBOSE, MpscEngine.class, "Calculating %s", next);
+            configuration.store().save(next);
+            M model = configuration.stateToModel().convert(next);
+            logger.print(LogLevel.VERBOSE, MpscEngine.class, "Emitting %s", model);
+            emitter.onNext(model);
+        }
+
+        private void fail(Throwable e) {
+            queue.clear();
+            subscriptions.dispose();
+            emitter.onError(e);
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded lock-free multi-producer/single-consumer queue, after Dmitry Vyukov's intrusive MPSC node queue.
+ * Offering is wait-free: a single atomic exchange. Polling must only ever be done by one thread at a time.
+ *
+ * @author PierreJean
+ */
+final class MpscQueue<T> {
+
+    /**
+     * The last node offered. Shared by the producers.
+     */
+    private final AtomicReference<Node<T>> producerNode;
+    /**
+     * The last node polled, its value is already consumed. Only accessed by the consumer.
+     */
+    private Node<T> consumerNode;
+
+    MpscQueue() {
+        Node<T> stub = new Node<>(null);
+        producerNode = new AtomicReference<>(stub);
+        consumerNode = stub;
+    }
+
+    void offer(T value) {
+        Node<T> node = new Node<>(value);
+        Node<T> previous = producerNode.getAndSet(node);
+        previous.lazySet(node);
+    }
+
+    /**
+     * @return <code>null</code> if the queue is empty.
+     */
+    @Nullable
+    T poll() {
+        Node<T> next = consumerNode.get();
+        if (next == null) {
+            if (consumerNode == producerNode.get()) {
+                return null;
+            }
+            // A producer has swapped the last node but not linked it yet.
+            do {
+                next = consumerNode.get();
+            } while (next == null);
+        }
+        T result = next.value;
+        next.value = null;
+        consumerNode = next;
+        return result;
+    }
+
+    boolean isEmpty() {
+        return consumerNode == producerNode.get();
+    }
+
+    void clear() {
+        //noinspection StatementWithEmptyBody
+        while (poll() != null) ;
+    }
+
+    /**
+     * The atomic reference is the link to the next node.
+     */
+    private static final class Node<T> extends AtomicReference<Node<T>> {
+
+        private T value;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+}
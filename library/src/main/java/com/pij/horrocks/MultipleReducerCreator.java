@@ -24,50 +24,134 @@ import io.reactivex.subjects.Subject;
 
 /**
  * <p>Created on 01/01/2018.</p>
+ * <p>By default, it must be triggered from one thread at a time, see {@link Triggering} to change that. Use a
+ * {@link #builder(AsyncInteraction) builder} to set more than its logger.</p>
  *
  * @author PierreJean
  */
 
 public final class MultipleReducerCreator<E, S> implements TriggeredReducerCreator<E, S> {
     private final Subject<E> event = PublishSubject.create();
+    private final Triggerable<E> trigger;
     private final AsyncInteraction<E, S> interaction;
-    private final Logger logger;
+    private final LevelLogger logger;
+    private final EngineMetrics metrics;
+    private final Concurrency concurrency;
 
     public MultipleReducerCreator(@NonNull AsyncInteraction<E, S> interaction) {
-        this(interaction, Logger.NOOP);
+        this(interaction, LevelLogger.OFF);
     }
 
+    /**
+     * Prints every event and reducer, see {@link #MultipleReducerCreator(AsyncInteraction, LevelLogger)} to restrict that.
+     */
     public MultipleReducerCreator(@NonNull AsyncInteraction<E, S> interaction, @NonNull Logger logger) {
-        this.interaction = interaction;
-        this.logger = logger;
+        this(interaction, LevelLogger.verbose(logger));
+    }
+
+    public MultipleReducerCreator(@NonNull AsyncInteraction<E, S> interaction, @NonNull LevelLogger logger) {
+        this(builder(interaction).logger(logger));
+    }
+
+    private MultipleReducerCreator(@NonNull Builder<E, S> builder) {
+        interaction = builder.interaction;
+        logger = builder.logger;
+        metrics = builder.metrics;
+        concurrency = builder.concurrency;
+        trigger = builder.triggering.apply(event);
+    }
+
+    /**
+     * Starts with the defaults of the constructors: no logging, no metrics, {@link Concurrency#merge()} and
+     * {@link Triggering#direct()}.
+     */
+    @NonNull
+    public static <E, S> Builder<E, S> builder(@NonNull AsyncInteraction<E, S> interaction) {
+        return new Builder<>(interaction);
     }
 
     @Override
     public void trigger(@NonNull E event) {
         logReceivedEvent(event);
-        this.event.onNext(event);
+        trigger.trigger(event);
     }
 
     @NonNull
     @Override
     public Observable<Reducer<S>> reducers() {
-        return event
-                .doOnNext(this::logProcessingEvent)
-                .flatMap(interaction::process)
+        return concurrency.apply(event.doOnNext(this::logProcessingEvent), this::process)
                 .doOnNext(this::logReducer)
                 ;
     }
 
+    private Observable<Reducer<S>> process(@NonNull E event) {
+        if (metrics == EngineMetrics.NONE) return interaction.process(event);
+        return interaction.process(event)
+                .doOnSubscribe(ignored -> metrics.interactionStarted())
+                .doFinally(metrics::interactionCompleted);
+    }
+
     private void logReceivedEvent(@NonNull E event) {
-        logger.print(interaction.getClass(), "Received event %s", event);
+        logger.print(LogLevel.VERBOSE, interaction.getClass(), "Received event %s", event);
     }
 
     private void logProcessingEvent(E event) {
-        logger.print(interaction.getClass(), "Processing event %s", event);
+        logger.print(LogLevel.VERBOSE, interaction.getClass(), "Processing event %s", event);
     }
 
     private void logReducer(Reducer<S> reducer) {
-        logger.print(interaction.getClass(), "Emitting reducer %s", reducer);
+        logger.print(LogLevel.VERBOSE, interaction.getClass(), "Emitting reducer %s", reducer);
+    }
+
+    public static final class Builder<E, S> {
+
+        private final AsyncInteraction<E, S> interaction;
+        private LevelLogger logger = LevelLogger.OFF;
+        private EngineMetrics metrics = EngineMetrics.NONE;
+        private Concurrency concurrency = Concurrency.merge();
+        private Triggering triggering = Triggering.direct();
+
+        private Builder(@NonNull AsyncInteraction<E, S> interaction) {
+            this.interaction = interaction;
+        }
+
+        @NonNull
+        public Builder<E, S> logger(@NonNull LevelLogger logger) {
+            this.logger = logger;
+            return this;
+        }
+
+        /**
+         * @param metrics counts the interactions in flight.
+         */
+        @NonNull
+        public Builder<E, S> metrics(@NonNull EngineMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @param concurrency how to process an event while previous ones are being processed.
+         */
+        @NonNull
+        public Builder<E, S> concurrency(@NonNull Concurrency concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * @param triggering how events triggered from several threads reach the interaction.
+         */
+        @NonNull
+        public Builder<E, S> triggering(@NonNull Triggering triggering) {
+            this.triggering = triggering;
+            return this;
+        }
+
+        @NonNull
+        public MultipleReducerCreator<E, S> build() {
+            return new MultipleReducerCreator<>(this);
+        }
     }
 
 }
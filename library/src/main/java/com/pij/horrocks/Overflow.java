@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import com.google.auto.value.AutoValue;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.functions.Action;
+
+/**
+ * What a {@link BackpressureEngine} does with the reducers a {@link ReducerCreator} emits faster than the view
+ * consumes them.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class Overflow {
+
+    /**
+     * Keeps up to <code>capacity</code> reducers. The creator fails when more are pending: the engine applies the
+     * reducers already buffered, then the reducer of its {@link ErrorReducerFactory}. The reducer that overflowed the
+     * buffer is lost, and so are all those the creator emits afterwards: it is not subscribed to again for the rest of
+     * the run. Its {@link RetryPolicy} does not apply to the overflow.
+     */
+    @NonNull
+    public static Overflow bufferBounded(int capacity) {
+        return create(Strategy.BUFFER, capacity);
+    }
+
+    /**
+     * Keeps up to <code>capacity</code> reducers, dropping the oldest pending one when another is emitted.
+     * Suitable for creators whose reducers overwrite each others, e.g. progress reports.
+     */
+    @NonNull
+    public static Overflow dropOldest(int capacity) {
+        return create(Strategy.DROP_OLDEST, capacity);
+    }
+
+    /**
+     * Only keeps the last reducer emitted.
+     */
+    @NonNull
+    public static Overflow latest() {
+        return create(Strategy.LATEST, 1);
+    }
+
+    private static Overflow create(Strategy strategy, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be strictly positive: " + capacity);
+        return new AutoValue_Overflow(strategy, capacity);
+    }
+
+    abstract Strategy strategy();
+
+    abstract int capacity();
+
+    /**
+     * @param onDrop called when a reducer is dropped.
+     */
+    @NonNull
+    <T> Flowable<T> apply(@NonNull Observable<T> reducers, @NonNull Action onDrop) {
+        Flowable<T> flowable = reducers.toFlowable(BackpressureStrategy.MISSING);
+        switch (strategy()) {
+            case BUFFER:
+                // Delays the overflow error so the buffered reducers are applied first.
+                return flowable.onBackpressureBuffer(capacity(), true);
+            case DROP_OLDEST:
+                return flowable.onBackpressureBuffer(capacity(), onDrop, BackpressureOverflowStrategy.DROP_OLDEST);
+            case LATEST:
+                return flowable.onBackpressureLatest();
+            default:
+                throw new IllegalStateException("Unsupported strategy " + strategy());
+        }
+    }
+
+    enum Strategy {BUFFER, DROP_OLDEST, LATEST}
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map whose updates return a new map sharing most of its structure with the original. It is a hash
+ * array mapped trie: each level of the trie consumes 5 bits of the keys' hash codes and only allocates the slots in use.
+ * {@link #get(Object)}, {@link #plus(Object, Object)} and {@link #minus(Object)} take O(log<sub>32</sub> n).
+ * <p>Keys and values may not be <code>null</code>. Maps derived from one another without any change share the same
+ * structure, which {@link #sharesStructureWith(PersistentHashMap)} checks in constant time.</p>
+ *
+ * @author PierreJean
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(0, BitmapNode.EMPTY);
+
+    private final int size;
+    private final Node root;
+    private Set<Entry<K, V>> entries;
+
+    private PersistentHashMap(int size, Node root) {
+        this.size = size;
+        this.root = root;
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    @NonNull
+    public static <K, V> PersistentHashMap<K, V> of(@NonNull Map<? extends K, ? extends V> entries) {
+        PersistentHashMap<K, V> result = empty();
+        for (Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) return null;
+        return (V) root.find(0, hash(key), key);
+    }
+
+    /**
+     * @return a map where <code>key</code> is associated to <code>value</code>. This map if it already was.
+     */
+    @NonNull
+    public PersistentHashMap<K, V> plus(@NonNull K key, @NonNull V value) {
+        if (key == null || value == null) throw new NullPointerException("Null key or value");
+        boolean[] added = new boolean[1];
+        Node newRoot = root.plus(0, hash(key), key, value, added);
+        if (newRoot == root) return this;
+        return new PersistentHashMap<>(added[0] ? size + 1 : size, newRoot);
+    }
+
+    /**
+     * @return a map without <code>key</code>. This map if it did not contain it.
+     */
+    @NonNull
+    public PersistentHashMap<K, V> minus(@NonNull Object key) {
+        Node newRoot = root.minus(0, hash(key), key);
+        if (newRoot == root) return this;
+        return new PersistentHashMap<>(size - 1, newRoot == null ? BitmapNode.EMPTY : newRoot);
+    }
+
+    /**
+     * Constant time. If true, both maps contain the same entries. If false, they may still be equal.
+     */
+    public boolean sharesStructureWith(@NonNull PersistentHashMap<?, ?> other) {
+        return other == this || (size == other.size && root == other.root);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentHashMap && sharesStructureWith((PersistentHashMap<?, ?>) o)) return true;
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @NonNull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<Entry<K, V>>() {
+                @NonNull
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entries;
+    }
+
+    private abstract static class Node {
+
+        /**
+         * @return the value associated to the key, or <code>null</code>.
+         */
+        @Nullable
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * @param added set to <code>true</code> if the key was not present.
+         * @return this node if the key was already associated to the value.
+         */
+        @NonNull
+        abstract Node plus(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * @return this node if it did not contain the key, <code>null</code> if it becomes empty.
+         */
+        @Nullable
+        abstract Node minus(int shift, int hash, Object key);
+
+        /**
+         * Keys and values, or <code>null</code> and a sub-node, alternately.
+         */
+        abstract Object[] slots();
+    }
+
+    /**
+     * Holds a slot for each 5-bit hash fragment set in its bitmap. A slot is either a key and its value, or a sub-node.
+     */
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private static int bit(int shift, int hash) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) return null;
+            int i = 2 * index(bit);
+            Object slotKey = slots[i];
+            if (slotKey == null) return ((Node) slots[i + 1]).find(shift + BITS, hash, key);
+            return key.equals(slotKey) ? slots[i + 1] : null;
+        }
+
+        @Override
+        Node plus(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(shift, hash);
+            int i = 2 * index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 2];
+                System.arraycopy(slots, 0, newSlots, 0, i);
+                newSlots[i] = key;
+                newSlots[i + 1] = value;
+                System.arraycopy(slots, i, newSlots, i + 2, slots.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+            Object slotKey = slots[i];
+            Object slotValue = slots[i + 1];
+            if (slotKey == null) {
+                Node child = (Node) slotValue;
+                Node newChild = child.plus(shift + BITS, hash, key, value, added);
+                return newChild == child ? this : withSlot(i + 1, newChild);
+            }
+            if (key.equals(slotKey)) {
+                return value == slotValue ? this : withSlot(i + 1, value);
+            }
+            added[0] = true;
+            Node child = pair(shift + BITS, hash(slotKey), slotKey, slotValue, hash, key, value);
+            Object[] newSlots = slots.clone();
+            newSlots[i] = null;
+            newSlots[i + 1] = child;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        @Override
+        Node minus(int shift, int hash, Object key) {
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) return this;
+            int i = 2 * index(bit);
+            Object slotKey = slots[i];
+            if (slotKey == null) {
+                Node child = (Node) slots[i + 1];
+                Node newChild = child.minus(shift + BITS, hash, key);
+                if (newChild == child) return this;
+                if (newChild != null) return withSlot(i + 1, newChild);
+                return withoutSlot(bit, i);
+            }
+            return key.equals(slotKey) ? withoutSlot(bit, i) : this;
+        }
+
+        @Override
+        Object[] slots() {
+            return slots;
+        }
+
+        private BitmapNode withSlot(int i, Object content) {
+            Object[] newSlots = slots.clone();
+            newSlots[i] = content;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        @Nullable
+        private BitmapNode withoutSlot(int bit, int i) {
+            if (bitmap == bit) return null;
+            Object[] newSlots = new Object[slots.length - 2];
+            System.arraycopy(slots, 0, newSlots, 0, i);
+            System.arraycopy(slots, i + 2, newSlots, i, slots.length - i - 2);
+            return new BitmapNode(bitmap ^ bit, newSlots);
+        }
+
+        /**
+         * A node holding two keys whose hashes collide up to <code>shift</code>.
+         */
+        private static Node pair(int shift, int hash1, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+            }
+            boolean[] ignored = new boolean[1];
+            return EMPTY.plus(shift, hash1, key1, value1, ignored).plus(shift, hash2, key2, value2, ignored);
+        }
+    }
+
+    /**
+     * Holds the keys whose hash codes are all equal.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+        private final Object[] slots;
+
+        CollisionNode(int hash, Object[] slots) {
+            this.hash = hash;
+            this.slots = slots;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < slots.length; i += 2) {
+                if (key.equals(slots[i])) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            return i < 0 ? null : slots[i + 1];
+        }
+
+        @Override
+        Node plus(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Nest this node under a bitmap node so the new key can be told apart.
+                BitmapNode nested = new BitmapNode(BitmapNode.bit(shift, this.hash), new Object[]{null, this});
+                return nested.plus(shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (slots[i + 1] == value) return this;
+                Object[] newSlots = slots.clone();
+                newSlots[i + 1] = value;
+                return new CollisionNode(hash, newSlots);
+            }
+            added[0] = true;
+            Object[] newSlots = Arrays.copyOf(slots, slots.length + 2);
+            newSlots[slots.length] = key;
+            newSlots[slots.length + 1] = value;
+            return new CollisionNode(hash, newSlots);
+        }
+
+        @Override
+        Node minus(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            if (i < 0) return this;
+            if (slots.length == 2) return null;
+            Object[] newSlots = new Object[slots.length - 2];
+            System.arraycopy(slots, 0, newSlots, 0, i);
+            System.arraycopy(slots, i + 2, newSlots, i, slots.length - i - 2);
+            return new CollisionNode(hash, newSlots);
+        }
+
+        @Override
+        Object[] slots() {
+            return slots;
+        }
+    }
+
+    /**
+     * Depth-first traversal of the trie.
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        private final Deque<Object[]> slotStack = new ArrayDeque<>();
+        private final Deque<Integer> indexStack = new ArrayDeque<>();
+        private Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            push(root);
+            advance();
+        }
+
+        private void push(Node node) {
+            slotStack.push(node.slots());
+            indexStack.push(0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (next == null && !slotStack.isEmpty()) {
+                Object[] slots = slotStack.peek();
+                int i = indexStack.pop();
+                if (i >= slots.length) {
+                    slotStack.pop();
+                    continue;
+                }
+                indexStack.push(i + 2);
+                if (slots[i] == null) {
+                    push((Node) slots[i + 1]);
+                } else {
+                    next = new SimpleImmutableEntry<>((K) slots[i], (V) slots[i + 1]);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) throw new NoSuchElementException();
+            Entry<K, V> result = next;
+            advance();
+            return result;
+        }
+    }
+}
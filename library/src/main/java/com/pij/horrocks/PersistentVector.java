@@ -0,0 +1,263 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list whose updates return a new list sharing most of its structure with the original. Elements are
+ * held in a trie of 32-element arrays, plus a tail array for the last elements: {@link #get(int)},
+ * {@link #with(int, Object)} and {@link #minusLast()} take O(log<sub>32</sub> n), {@link #plus(Object)} is amortised
+ * O(1). Updating one element of a 50,000-element list copies 4 small arrays, not the whole list.
+ * <p>Meant for the list properties of a state: a reducer updates the list it receives rather than building a copy.
+ * Two lists derived from one another without any change share the same structure, which
+ * {@link #sharesStructureWith(PersistentVector)} checks in constant time.</p>
+ *
+ * @author PierreJean
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int size;
+    private final int shift;
+    /**
+     * The trie holding all elements but those of the tail. Inner nodes hold 32 children, leaves 32 elements.
+     */
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Builds the trie bottom up, without the intermediate copies of adding the elements one by one.
+     */
+    @NonNull
+    public static <E> PersistentVector<E> of(@NonNull Collection<? extends E> elements) {
+        if (elements instanceof PersistentVector) {
+            @SuppressWarnings("unchecked") PersistentVector<E> result = (PersistentVector<E>) elements;
+            return result;
+        }
+        Object[] all = elements.toArray();
+        int count = all.length;
+        if (count == 0) return empty();
+        int tailOffset = tailOffset(count);
+        List<Object[]> nodes = new ArrayList<>();
+        for (int i = 0; i < tailOffset; i += WIDTH) {
+            nodes.add(Arrays.copyOfRange(all, i, i + WIDTH));
+        }
+        int shift = BITS;
+        while (nodes.size() > WIDTH) {
+            List<Object[]> parents = new ArrayList<>();
+            for (int i = 0; i < nodes.size(); i += WIDTH) {
+                Object[] parent = new Object[WIDTH];
+                List<Object[]> children = nodes.subList(i, Math.min(i + WIDTH, nodes.size()));
+                children.toArray(parent);
+                parents.add(parent);
+            }
+            nodes = parents;
+            shift += BITS;
+        }
+        Object[] root = nodes.isEmpty() ? EMPTY_NODE : nodes.toArray(new Object[WIDTH]);
+        return new PersistentVector<>(count, shift, root, Arrays.copyOfRange(all, tailOffset, count));
+    }
+
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) leafFor(index)[index & MASK];
+    }
+
+    /**
+     * @return a list with the element at <code>index</code> replaced, or with <code>element</code> appended if
+     * <code>index</code> is the size of this list.
+     */
+    @NonNull
+    public PersistentVector<E> with(int index, E element) {
+        if (index == size) return plus(element);
+        checkIndex(index);
+        if (index >= tailOffset(size)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, with(shift, root, index, element), tail);
+    }
+
+    /**
+     * @return a list with <code>element</code> appended.
+     */
+    @NonNull
+    public PersistentVector<E> plus(E element) {
+        if (size - tailOffset(size) < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // The tail is full: it moves into the trie.
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    /**
+     * @return a list without its last element.
+     * @throws IllegalStateException if the list is empty.
+     */
+    @NonNull
+    public PersistentVector<E> minusLast() {
+        if (size == 0) throw new IllegalStateException("Empty vector");
+        if (size == 1) return empty();
+        if (size - tailOffset(size) > 1) {
+            return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+        // The tail becomes empty: the last leaf of the trie becomes the tail.
+        Object[] newTail = leafFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * Constant time. If true, both lists contain the same elements. If false, they may still be equal.
+     */
+    public boolean sharesStructureWith(@NonNull PersistentVector<?> other) {
+        return other == this || (size == other.size && root == other.root && tail == other.tail);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentVector && sharesStructureWith((PersistentVector<?>) o)) return true;
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private Object[] leafFor(int index) {
+        checkIndex(index);
+        if (index >= tailOffset(size)) return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private static Object[] with(int level, Object[] node, int index, Object element) {
+        Object[] result = node.clone();
+        if (level == 0) {
+            result[index & MASK] = element;
+        } else {
+            int child = (index >>> level) & MASK;
+            result[child] = with(level - BITS, (Object[]) node[child], index, element);
+        }
+        return result;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+        int child = ((size - 1) >>> level) & MASK;
+        Object[] result = parent.clone();
+        Object[] inserted;
+        if (level == BITS) {
+            inserted = leaf;
+        } else {
+            Object[] existing = (Object[]) parent[child];
+            inserted = existing != null
+                    ? pushTail(level - BITS, existing, leaf)
+                    : newPath(level - BITS, leaf);
+        }
+        result[child] = inserted;
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0) return leaf;
+        Object[] result = new Object[WIDTH];
+        result[0] = newPath(level - BITS, leaf);
+        return result;
+    }
+
+    private Object[] popTail(int level, Object[] node) {
+        int child = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] newChild = popTail(level - BITS, (Object[]) node[child]);
+            if (newChild == null && child == 0) return null;
+            Object[] result = node.clone();
+            result[child] = newChild;
+            return result;
+        } else if (child == 0) {
+            return null;
+        } else {
+            Object[] result = node.clone();
+            result[child] = null;
+            return result;
+        }
+    }
+}
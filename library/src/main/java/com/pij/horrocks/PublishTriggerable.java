@@ -19,13 +19,25 @@ import android.support.annotation.NonNull;
 
 import io.reactivex.subjects.PublishSubject;
 
+/**
+ * By default, it must be triggered from one thread at a time, see {@link Triggering} to change that.
+ */
 public class PublishTriggerable<E> implements Triggerable<E> {
 
     private PublishSubject<E> events = PublishSubject.create();
+    private final Triggerable<E> trigger;
+
+    public PublishTriggerable() {
+        this(Triggering.direct());
+    }
+
+    public PublishTriggerable(@NonNull Triggering triggering) {
+        trigger = triggering.apply(events);
+    }
 
     @Override
     public void trigger(@NonNull E event) {
-        events.onNext(event);
+        trigger.trigger(event);
     }
 
     @NonNull
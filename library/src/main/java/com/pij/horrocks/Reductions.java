@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * The reduction steps shared by the engines.
+ *
+ * @author PierreJean
+ */
+final class Reductions {
+
+    private Reductions() {
+    }
+
+    /**
+     * Resets the transient properties of the current state before applying the reducer to it.
+     */
+    @NonNull
+    static <S> S reduce(@NonNull S current, @NonNull Reducer<S> reducer, @NonNull TransientCleaner<S> transientCleaner) {
+        S transientCleaned = transientCleaner.clean(current);
+        return reducer.reduce(transientCleaned);
+    }
+
+    /**
+     * Resets the transient properties of the current state once, then applies all reducers in order.
+     */
+    @NonNull
+    static <S> S reduce(@NonNull S current, @NonNull List<Reducer<S>> batch, @NonNull TransientCleaner<S> transientCleaner) {
+        S result = transientCleaner.clean(current);
+        for (Reducer<S> reducer : batch) {
+            result = reducer.reduce(result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Given to the {@link ErrorReducerFactory} when a {@link RetryPolicy} opens its circuit breaker: it stands for all the
+ * failures of a creator since its last reducer, so the state gets a single error reducer for the whole storm.
+ *
+ * @author PierreJean
+ */
+public final class RepeatedFailureException extends RuntimeException {
+
+    private final int count;
+
+    RepeatedFailureException(int count, @NonNull Throwable last) {
+        super(count + " consecutive failures, the last one being: " + last, last);
+        this.count = count;
+    }
+
+    /**
+     * The number of consecutive failures.
+     */
+    public int count() {
+        return count;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Runs an engine and keeps each run alive for a grace period after its last subscriber went away. A view that is
+ * dropped and taken again within that period, e.g. across a configuration change, gets the last model straight away
+ * and the run carries on: the creators are not subscribed to again and the state is not reloaded from the storage.
+ * <p>Runs are shared per {@link Configuration}: all the subscriptions to {@link #runWith(Configuration)} with the same
+ * configuration share the same run, whichever call returned the observable they subscribe to, until the run ends, i.e.
+ * until the grace period elapses without subscriber or the run terminates. A subscription after that starts a new
+ * run. A run only exists while subscribed to or in its grace period.</p>
+ *
+ * @author PierreJean
+ */
+public final class RetainedEngine<S, M> implements Engine<S, M> {
+
+    /**
+     * Guarded by this.
+     */
+    private final Map<Configuration<S, M>, Run> runs = new HashMap<>();
+    private final Engine<S, M> engine;
+    private final long gracePeriod;
+    private final TimeUnit unit;
+    private final Scheduler scheduler;
+
+    /**
+     * The grace period is timed on the computation scheduler.
+     */
+    public RetainedEngine(@NonNull Engine<S, M> engine, long gracePeriod, @NonNull TimeUnit unit) {
+        this(engine, gracePeriod, unit, Schedulers.computation());
+    }
+
+    /**
+     * @param scheduler where the grace period is timed, and where the run is disposed of when it elapses.
+     */
+    public RetainedEngine(@NonNull Engine<S, M> engine, long gracePeriod, @NonNull TimeUnit unit,
+                          @NonNull Scheduler scheduler) {
+        this.engine = engine;
+        this.gracePeriod = gracePeriod;
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Observable<M> runWith(Configuration<S, M> configuration) {
+        return Observable.defer(() -> {
+            Run run = acquire(configuration);
+            return run.models.doFinally(() -> release(run));
+        });
+    }
+
+    /**
+     * The number of runs currently alive, whether they have subscribers or are in their grace period.
+     */
+    public synchronized int runCount() {
+        return runs.size();
+    }
+
+    private synchronized Run acquire(Configuration<S, M> configuration) {
+        Run run = runs.get(configuration);
+        if (run == null) {
+            run = new Run(configuration);
+            runs.put(configuration, run);
+        }
+        run.subscribers++;
+        if (run.expiry != null) {
+            run.expiry.dispose();
+            run.expiry = null;
+        }
+        return run;
+    }
+
+    private synchronized void release(Run run) {
+        if (--run.subscribers == 0 && runs.get(run.configuration) == run) {
+            run.expiry = scheduler.scheduleDirect(() -> expire(run), gracePeriod, unit);
+        }
+    }
+
+    /**
+     * Ends the run if it is still without subscriber. It is removed before its connection is disposed of, so no
+     * subscription can join a run that is ending.
+     */
+    private void expire(Run run) {
+        Disposable connection;
+        synchronized (this) {
+            if (run.subscribers > 0 || !runs.remove(run.configuration, run)) return;
+            connection = run.connection;
+        }
+        if (connection != null) connection.dispose();
+    }
+
+    private synchronized void terminated(Run run) {
+        runs.remove(run.configuration, run);
+    }
+
+    /**
+     * One run of the engine, connected once, by its first subscriber.
+     */
+    private final class Run {
+
+        final Configuration<S, M> configuration;
+        final Observable<M> models;
+        /**
+         * Guarded by the engine, as are all fields below.
+         */
+        int subscribers;
+        @Nullable
+        Disposable expiry;
+        @Nullable
+        Disposable connection;
+
+        Run(Configuration<S, M> configuration) {
+            this.configuration = configuration;
+            models = engine.runWith(configuration)
+                    .doOnTerminate(() -> terminated(this))
+                    .replay(1)
+                    .autoConnect(1, this::connected);
+        }
+
+        private void connected(Disposable connection) {
+            synchronized (RetainedEngine.this) {
+                this.connection = connection;
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+
+/**
+ * What an engine does when a {@link ReducerCreator} fails. In all cases, the failure is turned into a reducer by the
+ * {@link ErrorReducerFactory}.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class RetryPolicy {
+
+    /**
+     * The creator stops once it has failed. The default.
+     */
+    @NonNull
+    public static RetryPolicy never() {
+        return new AutoValue_RetryPolicy.Builder()
+                .retries(false)
+                .initialDelayNanos(0)
+                .maxDelayNanos(0)
+                .jitter(0)
+                .breakerFailures(0)
+                .breakerWindowNanos(0)
+                .breakerOpenNanos(0)
+                .build();
+    }
+
+    /**
+     * The creator is subscribed to again after a failure, after a delay that doubles with each consecutive failure,
+     * from <code>initialDelay</code> up to <code>maxDelay</code>. The delay is reset once the creator emits a reducer.
+     * Only the first failure of a series gets an error reducer. By default, delays have up to 50% of jitter, so
+     * creators failing together do not retry together.
+     *
+     * @param scheduler measures the delays.
+     */
+    @NonNull
+    public static RetryPolicy exponentialBackoff(long initialDelay, long maxDelay, @NonNull TimeUnit unit,
+                                                 @NonNull Scheduler scheduler) {
+        if (initialDelay <= 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Delays must be such that 0 < initial <= max: " + initialDelay + ", " + maxDelay);
+        }
+        return never().toBuilder()
+                .retries(true)
+                .initialDelayNanos(unit.toNanos(initialDelay))
+                .maxDelayNanos(unit.toNanos(maxDelay))
+                .jitter(0.5)
+                .scheduler(scheduler)
+                .build();
+    }
+
+    abstract boolean retries();
+
+    abstract long initialDelayNanos();
+
+    abstract long maxDelayNanos();
+
+    abstract double jitter();
+
+    abstract int breakerFailures();
+
+    abstract long breakerWindowNanos();
+
+    abstract long breakerOpenNanos();
+
+    @Nullable
+    abstract Scheduler scheduler();
+
+    abstract Builder toBuilder();
+
+    /**
+     * @param ratio how much of each delay may be randomly removed, from 0, for exact delays, to 1.
+     */
+    @NonNull
+    public RetryPolicy withJitter(double ratio) {
+        if (ratio < 0 || ratio > 1) throw new IllegalArgumentException("Jitter must be between 0 and 1: " + ratio);
+        return toBuilder().jitter(ratio).build();
+    }
+
+    /**
+     * Opens a circuit breaker after <code>failures</code> failures within <code>window</code>: the creator then gets a
+     * single error reducer, given a {@link RepeatedFailureException}, and is only subscribed to again after
+     * <code>openDuration</code>. If it fails again before emitting a reducer, the breaker opens again straight away.
+     */
+    @NonNull
+    public RetryPolicy withCircuitBreaker(int failures, long window, long openDuration, @NonNull TimeUnit unit) {
+        if (!retries()) throw new IllegalStateException("A policy that never retries needs no circuit breaker");
+        if (failures <= 0) throw new IllegalArgumentException("failures must be strictly positive: " + failures);
+        if (window <= 0 || openDuration <= 0) {
+            throw new IllegalArgumentException("Durations must be strictly positive: " + window + ", " + openDuration);
+        }
+        return toBuilder()
+                .breakerFailures(failures)
+                .breakerWindowNanos(unit.toNanos(window))
+                .breakerOpenNanos(unit.toNanos(openDuration))
+                .build();
+    }
+
+    @NonNull
+    <S> Observable<Reducer<S>> apply(@NonNull Observable<Reducer<S>> reducers,
+                                     @NonNull ErrorReducerFactory<S> errorReducerFactory) {
+        if (!retries()) return reducers.onErrorReturn(errorReducerFactory::create);
+        return Observable.defer(() -> new Retrier<>(this, errorReducerFactory).apply(reducers));
+    }
+
+    /**
+     * @param failure the number of consecutive failures, from 1.
+     */
+    long delayNanos(int failure) {
+        // Doubling stops before the delay overflows.
+        int doublings = Math.min(failure - 1, Long.numberOfLeadingZeros(initialDelayNanos()) - 1);
+        long delay = Math.min(initialDelayNanos() << doublings, maxDelayNanos());
+        return delay - (long) (delay * jitter() * Math.random());
+    }
+
+    @AutoValue.Builder
+    abstract static class Builder {
+
+        abstract Builder retries(boolean retries);
+
+        abstract Builder initialDelayNanos(long initialDelayNanos);
+
+        abstract Builder maxDelayNanos(long maxDelayNanos);
+
+        abstract Builder jitter(double jitter);
+
+        abstract Builder breakerFailures(int breakerFailures);
+
+        abstract Builder breakerWindowNanos(long breakerWindowNanos);
+
+        abstract Builder breakerOpenNanos(long breakerOpenNanos);
+
+        abstract Builder scheduler(@Nullable Scheduler scheduler);
+
+        abstract RetryPolicy build();
+    }
+
+    /**
+     * The failures of one subscription to a creator. Only accessed by one subscription attempt at a time.
+     */
+    private static final class Retrier<S> {
+
+        private final RetryPolicy policy;
+        private final ErrorReducerFactory<S> errorReducerFactory;
+        private final Scheduler scheduler;
+        /**
+         * The times of the recent failures, the oldest first.
+         */
+        private final Deque<Long> failures = new ArrayDeque<>();
+        private int consecutiveFailures;
+        private boolean halfOpen;
+        private long nextDelayNanos;
+
+        Retrier(RetryPolicy policy, ErrorReducerFactory<S> errorReducerFactory) {
+            this.policy = policy;
+            this.errorReducerFactory = errorReducerFactory;
+            //noinspection ConstantConditions a policy that retries has a scheduler
+            scheduler = policy.scheduler();
+        }
+
+        Observable<Reducer<S>> apply(Observable<Reducer<S>> reducers) {
+            return reducers
+                    .doOnNext(ignored -> succeeded())
+                    .onErrorResumeNext((Throwable error) -> {
+                        Reducer<S> errorReducer = failed(error);
+                        Observable<Reducer<S>> failure = Observable.error(error);
+                        return errorReducer == null ? failure : Observable.just(errorReducer).concatWith(failure);
+                    })
+                    .retryWhen(errors -> errors.concatMap(ignored ->
+                            Observable.timer(nextDelayNanos, TimeUnit.NANOSECONDS, scheduler)));
+        }
+
+        private void succeeded() {
+            consecutiveFailures = 0;
+            halfOpen = false;
+        }
+
+        /**
+         * Decides on the delay before the next attempt.
+         *
+         * @return the error reducer to emit, if any.
+         */
+        @Nullable
+        private Reducer<S> failed(Throwable error) {
+            consecutiveFailures++;
+            if (policy.breakerFailures() > 0) {
+                long now = scheduler.now(TimeUnit.NANOSECONDS);
+                failures.addLast(now);
+                while (now - failures.peekFirst() > policy.breakerWindowNanos()) {
+                    failures.removeFirst();
+                }
+                if (halfOpen || failures.size() >= policy.breakerFailures()) {
+                    failures.clear();
+                    halfOpen = true;
+                    nextDelayNanos = policy.breakerOpenNanos();
+                    return errorReducerFactory.create(new RepeatedFailureException(consecutiveFailures, error));
+                }
+            }
+            nextDelayNanos = policy.delayNanos(consecutiveFailures);
+            return consecutiveFailures == 1 ? errorReducerFactory.create(error) : null;
+        }
+    }
+}
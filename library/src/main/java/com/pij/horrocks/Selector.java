@@ -0,0 +1,29 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A projection of a state, or of a part of it. See {@link Selectors} to memoize and compose them.
+ *
+ * @author PierreJean
+ */
+@FunctionalInterface
+public interface Selector<S, R> {
+
+    @NonNull
+    R select(@NonNull S input);
+}
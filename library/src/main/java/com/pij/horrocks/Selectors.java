@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Memoized {@link Selector}s. A memoized selector only recalculates its result when its input is a different
+ * instance than the previous one; a combined selector only recombines the results of its input selectors when one of
+ * them is a different instance. With immutable states, whose unchanged parts are shared between successive states,
+ * a {@link StateConverter} built this way only recalculates the parts of the model whose inputs changed:
+ * <pre>
+ * Selector&lt;State, Summary&gt; summary = Selectors.combine(
+ *         Selectors.memoize(State::items), State::filter,
+ *         (items, filter) -&gt; summarize(items, filter));
+ * </pre>
+ * Each memoized selector only remembers its last input, so it should be used by a single engine. They are not
+ * designed to be called concurrently.
+ *
+ * @author PierreJean
+ */
+public final class Selectors {
+
+    private Selectors() {
+    }
+
+    @NonNull
+    public static <S, R> Selector<S, R> memoize(@NonNull Selector<S, R> selector) {
+        return new Selector<S, R>() {
+            private S lastInput;
+            private R lastResult;
+
+            @NonNull
+            @Override
+            public R select(@NonNull S input) {
+                if (lastResult == null || input != lastInput) {
+                    lastResult = selector.select(input);
+                    lastInput = input;
+                }
+                return lastResult;
+            }
+        };
+    }
+
+    @NonNull
+    public static <S, A, B, R> Selector<S, R> combine(@NonNull Selector<S, A> first,
+                                                     @NonNull Selector<S, B> second,
+                                                     @NonNull Combiner2<A, B, R> combiner) {
+        return new Selector<S, R>() {
+            private A lastFirst;
+            private B lastSecond;
+            private R lastResult;
+
+            @NonNull
+            @Override
+            public R select(@NonNull S input) {
+                A a = first.select(input);
+                B b = second.select(input);
+                if (lastResult == null || a != lastFirst || b != lastSecond) {
+                    lastResult = combiner.combine(a, b);
+                    lastFirst = a;
+                    lastSecond = b;
+                }
+                return lastResult;
+            }
+        };
+    }
+
+    @NonNull
+    public static <S, A, B, C, R> Selector<S, R> combine(@NonNull Selector<S, A> first,
+                                                        @NonNull Selector<S, B> second,
+                                                        @NonNull Selector<S, C> third,
+                                                        @NonNull Combiner3<A, B, C, R> combiner) {
+        return new Selector<S, R>() {
+            private A lastFirst;
+            private B lastSecond;
+            private C lastThird;
+            private R lastResult;
+
+            @NonNull
+            @Override
+            public R select(@NonNull S input) {
+                A a = first.select(input);
+                B b = second.select(input);
+                C c = third.select(input);
+                if (lastResult == null || a != lastFirst || b != lastSecond || c != lastThird) {
+                    lastResult = combiner.combine(a, b, c);
+                    lastFirst = a;
+                    lastSecond = b;
+                    lastThird = c;
+                }
+                return lastResult;
+            }
+        };
+    }
+
+    /**
+     * Adapts a selector, typically a memoized one, to the converter of a {@link Configuration}.
+     */
+    @NonNull
+    public static <S, M> StateConverter<S, M> converter(@NonNull Selector<S, M> selector) {
+        return selector::select;
+    }
+
+    @FunctionalInterface
+    public interface Combiner2<A, B, R> {
+        @NonNull
+        R combine(@NonNull A first, @NonNull B second);
+    }
+
+    @FunctionalInterface
+    public interface Combiner3<A, B, C, R> {
+        @NonNull
+        R combine(@NonNull A first, @NonNull B second, @NonNull C third);
+    }
+}
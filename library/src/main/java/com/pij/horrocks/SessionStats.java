@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * A snapshot of the activity of a session run by an {@link EngineHost}.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class SessionStats {
+
+    static SessionStats create(int pendingActions, long dispatchCount, long idleMillis, long weight) {
+        return new AutoValue_SessionStats(pendingActions, dispatchCount, idleMillis, weight);
+    }
+
+    /**
+     * The actions dispatched to the session and not run yet on the host's scheduler. The reducers the actions caused
+     * and that the engine has not applied yet are not counted.
+     */
+    public abstract int pendingActions();
+
+    /**
+     * The actions dispatched to the session since it was created.
+     */
+    public abstract long dispatchCount();
+
+    /**
+     * The time since the last action was dispatched to the session.
+     */
+    public abstract long idleMillis();
+
+    /**
+     * The estimate of the host's {@link Weigher} for the latest model, 0 without weigher.
+     */
+    public abstract long weight();
+}
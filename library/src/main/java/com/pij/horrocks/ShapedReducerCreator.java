@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Shapes the events triggered on a creator before they reach it, with {@link EventShaper}s applied in order: the
+ * events the shapers drop or combine produce no reducer at all.
+ * <pre>
+ * new ShapedReducerCreator&lt;&gt;(new SingleReducerCreator&lt;&gt;(new SearchFeature()),
+ *         EventShapers.debounce(300, MILLISECONDS, computation()), EventShapers.distinct());
+ * </pre>
+ *
+ * @author PierreJean
+ */
+public final class ShapedReducerCreator<E, S> implements TriggeredReducerCreator<E, S> {
+
+    private final Subject<E> events = PublishSubject.create();
+    private final Triggerable<E> trigger;
+    private final Observable<Reducer<S>> reducers;
+
+    /**
+     * Can be triggered from several threads at once, see {@link Triggering#serialized()}.
+     */
+    @SafeVarargs
+    public ShapedReducerCreator(@NonNull TriggeredReducerCreator<E, S> creator, @NonNull EventShaper<E>... shapers) {
+        this(Triggering.serialized(), creator, shapers);
+    }
+
+    /**
+     * @param triggering how events triggered from several threads reach the shapers.
+     */
+    @SafeVarargs
+    public ShapedReducerCreator(@NonNull Triggering triggering, @NonNull TriggeredReducerCreator<E, S> creator,
+                                @NonNull EventShaper<E>... shapers) {
+        trigger = triggering.apply(events);
+        Observable<E> shaped = events;
+        for (EventShaper<E> shaper : shapers) {
+            shaped = shaper.shape(shaped);
+        }
+        // Shared, so each shaped event triggers the creator once however many observe its reducers.
+        Observable<Reducer<S>> triggers = shaped.doOnNext(creator::trigger).ignoreElements().<Reducer<S>>toObservable()
+                .share();
+        reducers = creator.reducers().mergeWith(triggers);
+    }
+
+    @Override
+    public void trigger(@NonNull E event) {
+        trigger.trigger(event);
+    }
+
+    /**
+     * Events are shaped, and reach the creator, while its reducers are observed.
+     */
+    @NonNull
+    @Override
+    public Observable<Reducer<S>> reducers() {
+        return reducers;
+    }
+}
@@ -24,28 +24,46 @@ import io.reactivex.subjects.Subject;
 
 /**
  * <p>Created on 01/01/2018.</p>
+ * <p>By default, it must be triggered from one thread at a time, see {@link Triggering} to change that.</p>
  *
  * @author PierreJean
  */
 
 public final class SingleReducerCreator<E, S> implements TriggeredReducerCreator<E, S> {
     private final Subject<E> event = PublishSubject.create();
+    private final Triggerable<E> trigger;
     private final Interaction<E, S> interaction;
-    private final Logger logger;
+    private final LevelLogger logger;
 
     public SingleReducerCreator(@NonNull Interaction<E, S> interaction) {
-        this(interaction, Logger.NOOP);
+        this(interaction, LevelLogger.OFF);
     }
 
+    /**
+     * Prints every event and reducer, see {@link #SingleReducerCreator(Interaction, LevelLogger)} to restrict that.
+     */
     public SingleReducerCreator(@NonNull Interaction<E, S> interaction, @NonNull Logger logger) {
+        this(interaction, LevelLogger.verbose(logger));
+    }
+
+    public SingleReducerCreator(@NonNull Interaction<E, S> interaction, @NonNull LevelLogger logger) {
+        this(interaction, logger, Triggering.direct());
+    }
+
+    /**
+     * @param triggering how events triggered from several threads reach the interaction.
+     */
+    public SingleReducerCreator(@NonNull Interaction<E, S> interaction, @NonNull LevelLogger logger,
+                                @NonNull Triggering triggering) {
         this.interaction = interaction;
         this.logger = logger;
+        trigger = triggering.apply(event);
     }
 
     @Override
     public void trigger(@NonNull E event) {
         logReceivedEvent(event);
-        this.event.onNext(event);
+        trigger.trigger(event);
     }
 
     @NonNull
@@ -59,15 +77,15 @@ public final class SingleReducerCreator<E, S> implements TriggeredReducerCreator
     }
 
     private void logReceivedEvent(@NonNull E event) {
-        logger.print(interaction.getClass(), "Received event %s", event);
+        logger.print(LogLevel.VERBOSE, interaction.getClass(), "Received event %s", event);
     }
 
     private void logProcessingEvent(E event) {
-        logger.print(interaction.getClass(), "Processing event %s", event);
+        logger.print(LogLevel.VERBOSE, interaction.getClass(), "Processing event %s", event);
     }
 
     private void logReducer(Reducer<S> reducer) {
-        logger.print(interaction.getClass(), "Emitting reducer %s", reducer);
+        logger.print(LogLevel.VERBOSE, interaction.getClass(), "Emitting reducer %s", reducer);
     }
 
 }
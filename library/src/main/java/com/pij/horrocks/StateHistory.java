@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Keeps the last states of a run, and the creator of the reducer that produced each of them, to find out how a state
+ * came about. Once full, each new state replaces the oldest one.
+ * <p>The history keeps references to the states, not copies: states built with persistent collections, e.g.
+ * {@link PersistentVector} and {@link PersistentHashMap}, share most of their structure with the previous state, so the
+ * memory the history retains is in the order of the changes, not of the states.</p>
+ * <p>The history is also a creator: {@link #jumpTo(int)} and {@link #replayFrom(int)} make the engine emit the states
+ * of the history again. Those states are not recorded again.</p>
+ * <p>Only a {@link DefaultEngine} records states, when given a history in {@link Configuration#history()}. Without
+ * one, the engine does not record anything.</p>
+ *
+ * @author PierreJean
+ */
+public final class StateHistory<S> implements ReducerCreator<S> {
+
+    private final Subject<Reducer<S>> travels = PublishSubject.<Reducer<S>>create().toSerialized();
+    private final HistoryEntry<?>[] entries;
+    /**
+     * The number of entries ever recorded. The next one goes at <code>recorded % capacity</code>.
+     */
+    private long recorded;
+
+    /**
+     * @param capacity the number of states kept.
+     */
+    public StateHistory(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        entries = new HistoryEntry<?>[capacity];
+    }
+
+    /**
+     * The states kept, the oldest first.
+     */
+    @NonNull
+    public synchronized List<HistoryEntry<S>> entries() {
+        int size = size();
+        List<HistoryEntry<S>> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(entry(i));
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(recorded, entries.length);
+    }
+
+    /**
+     * Makes the engine emit the state at <code>index</code> in {@link #entries()}.
+     */
+    public void jumpTo(int index) {
+        S state = entryChecked(index).state();
+        travels.onNext(current -> state);
+    }
+
+    /**
+     * Makes the engine emit the states from <code>index</code> in {@link #entries()} to the latest one, in order.
+     */
+    public void replayFrom(int index) {
+        List<HistoryEntry<S>> replayed;
+        synchronized (this) {
+            entryChecked(index);
+            replayed = entries().subList(index, size());
+        }
+        for (HistoryEntry<S> entry : replayed) {
+            S state = entry.state();
+            travels.onNext(current -> state);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Observable<Reducer<S>> reducers() {
+        return travels;
+    }
+
+    synchronized void record(@Nullable ReducerCreator<S> origin, @NonNull S state) {
+        entries[(int) (recorded % entries.length)] = HistoryEntry.create(origin, state);
+        recorded++;
+    }
+
+    /**
+     * Records the states <code>reducer</code> produces, unless it comes from the history itself.
+     */
+    @NonNull
+    Reducer<S> recording(@NonNull ReducerCreator<S> origin, @NonNull Reducer<S> reducer) {
+        if (origin == this) return reducer;
+        return current -> {
+            S result = reducer.reduce(current);
+            record(origin, result);
+            return result;
+        };
+    }
+
+    @NonNull
+    private HistoryEntry<S> entryChecked(int index) {
+        synchronized (this) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("No entry " + index + " in a history of " + size());
+            }
+            return entry(index);
+        }
+    }
+
+    @NonNull
+    private HistoryEntry<S> entry(int index) {
+        long oldest = recorded - size();
+        @SuppressWarnings("unchecked")
+        HistoryEntry<S> result = (HistoryEntry<S>) entries[(int) ((oldest + index) % entries.length)];
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import io.reactivex.functions.Action;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Storage helpers shared by the engines.
+ *
+ * @author PierreJean
+ */
+final class Storages {
+
+    private Storages() {
+    }
+
+    /**
+     * What an engine does at the end of a run: flushing the storage on the I/O scheduler if it is a
+     * {@link FlushableStorage}, so the thread ending the run, often the main thread, does not wait for the disk.
+     */
+    @NonNull
+    static Action flushOf(@NonNull Storage<?> storage) {
+        if (storage instanceof FlushableStorage) {
+            FlushableStorage<?> flushable = (FlushableStorage<?>) storage;
+            return () -> flushable.flush().subscribeOn(Schedulers.io()).subscribe(() -> { }, RxJavaPlugins::onError);
+        }
+        return () -> { };
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * {@link StateEquality} in constant time for states holding persistent collections. Persistent collections derived
+ * from one another without any change share their structure, so comparing their roots tells whether a reducer changed
+ * them, without comparing their elements.
+ *
+ * @author PierreJean
+ */
+public final class StructuralEquality {
+
+    private StructuralEquality() {
+    }
+
+    /**
+     * Compares persistent collections by structure and anything else by identity. Constant time, but may consider equal
+     * collections different.
+     */
+    public static boolean same(@Nullable Object left, @Nullable Object right) {
+        if (left == right) return true;
+        if (left instanceof PersistentVector && right instanceof PersistentVector) {
+            return ((PersistentVector<?>) left).sharesStructureWith((PersistentVector<?>) right);
+        }
+        if (left instanceof PersistentHashMap && right instanceof PersistentHashMap) {
+            return ((PersistentHashMap<?, ?>) left).sharesStructureWith((PersistentHashMap<?, ?>) right);
+        }
+        return false;
+    }
+
+    /**
+     * A state filter that considers two states equal when each of the selected properties is the {@link #same(Object,
+     * Object)} in both. Properties wrongly deemed different only cost an extra emission.
+     */
+    @NonNull
+    @SafeVarargs
+    public static <S> StateEquality<S> onProperties(@NonNull Selector<S, ?>... properties) {
+        return (left, right) -> {
+            for (Selector<S, ?> property : properties) {
+                if (!same(property.select(left), property.select(right))) return false;
+            }
+            return true;
+        };
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import com.google.auto.value.AutoValue;
+
+import io.reactivex.subjects.Subject;
+
+/**
+ * How a creator delivers the events triggered on it to its reducers, which handle one event at a time.
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class Triggering {
+
+    /**
+     * Delivers each event on the triggering thread, before <code>trigger()</code> returns. An event triggered while
+     * another is delivered is delivered recursively. Triggers must not be called from several threads at once. The
+     * default.
+     */
+    @NonNull
+    public static Triggering direct() {
+        return new AutoValue_Triggering(Strategy.DIRECT);
+    }
+
+    /**
+     * Lets several threads trigger at once: a thread triggering while another one delivers queues its event and
+     * returns at once, and the delivering thread delivers it after the event in progress, before its own trigger
+     * returns. A short lock guards the queue, but is not held during deliveries.
+     */
+    @NonNull
+    public static Triggering serialized() {
+        return new AutoValue_Triggering(Strategy.SERIALIZED);
+    }
+
+    /**
+     * Lets several threads trigger at once, without a lock: events are queued, and whichever thread finds the queue
+     * idle delivers them until it is empty, so triggering never blocks. An event triggered while another is delivered
+     * is delivered after it. On a single core, a lock is cheaper: measure with the trigger contention benchmark.
+     */
+    @NonNull
+    public static Triggering lockFree() {
+        return new AutoValue_Triggering(Strategy.LOCK_FREE);
+    }
+
+    abstract Strategy strategy();
+
+    @NonNull
+    <E> Triggerable<E> apply(@NonNull Subject<E> events) {
+        switch (strategy()) {
+            case DIRECT:
+                return events::onNext;
+            case SERIALIZED:
+                return events.toSerialized()::onNext;
+            case LOCK_FREE:
+                return new ConcurrentTrigger<>(events);
+            default:
+                throw new IllegalStateException("Unsupported strategy " + strategy());
+        }
+    }
+
+    enum Strategy {DIRECT, SERIALIZED, LOCK_FREE}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * A value stamped with the version of the state it comes from. Within a run, the version starts at 0 with the initial
+ * state and increases by 1 each time a reduction produces a new state instance, so two values with the same version
+ * come from the same state. Comparing versions is O(1), unlike {@link #equals(Object)} which compares the values.
+ * <p>A {@link Configuration#placeholder()} comes from no state: its version is -1.</p>
+ *
+ * @author PierreJean
+ */
+@AutoValue
+public abstract class Versioned<T> {
+
+    @NonNull
+    static <T> Versioned<T> initial(@NonNull T value) {
+        return new AutoValue_Versioned<>(0, value);
+    }
+
+    @NonNull
+    static <T> Versioned<T> placeholder(@NonNull T value) {
+        return new AutoValue_Versioned<>(-1, value);
+    }
+
+    public abstract long version();
+
+    @NonNull
+    public abstract T value();
+
+    /**
+     * @return this if <code>next</code> is the same instance as the value, a new version of it otherwise.
+     */
+    @NonNull
+    Versioned<T> next(@NonNull T next) {
+        return next == value() ? this : new AutoValue_Versioned<>(version() + 1, next);
+    }
+
+    /**
+     * @return the converted value, with the same version.
+     */
+    @NonNull
+    <R> Versioned<R> convert(@NonNull StateConverter<T, R> converter) {
+        return new AutoValue_Versioned<>(version(), converter.convert(value()));
+    }
+
+    public boolean sameVersionAs(@NonNull Versioned<?> other) {
+        return version() == other.version();
+    }
+}
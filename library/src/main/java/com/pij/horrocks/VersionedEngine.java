@@ -0,0 +1,30 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import io.reactivex.Observable;
+
+/**
+ * An engine that can emit the version of the state each model comes from, see {@link Versioned}.
+ *
+ * @author PierreJean
+ */
+public interface VersionedEngine<S, M> extends Engine<S, M> {
+
+    /**
+     * Same as {@link #runWith(Configuration)}, each model being stamped with the version of its state.
+     */
+    Observable<Versioned<M>> runVersionedWith(Configuration<S, M> configuration);
+}
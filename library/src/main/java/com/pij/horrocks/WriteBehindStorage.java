@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+
+/**
+ * Saves states asynchronously, so a slow {@link Storage} does not delay the reduction. {@link #save(Object)} only
+ * records the state and schedules a write; states saved while a write is pending replace each other, so only the latest
+ * one is written. {@link #load()} returns the latest state saved, written or not.
+ * <p>Failures of the delegate storage are reported to {@link io.reactivex.plugins.RxJavaPlugins#onError} by the
+ * scheduler, except during {@link #flush()}, which emits them, and {@link #flushNow()}, which throws them.</p>
+ *
+ * @author PierreJean
+ */
+public final class WriteBehindStorage<S> implements FlushableStorage<S> {
+
+    private final Storage<S> delegate;
+    private final Scheduler scheduler;
+    private final AtomicReference<S> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Object writeLock = new Object();
+    private volatile S latest;
+
+    /**
+     * @param delegate  the storage that is actually written to, e.g. a {@link FileStorage}. It is only ever used by one
+     *                  thread at a time.
+     * @param scheduler where the writes take place, typically an I/O scheduler.
+     */
+    public WriteBehindStorage(@NonNull Storage<S> delegate, @NonNull Scheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+    }
+
+    @NonNull
+    @Override
+    public S load() {
+        S result = latest;
+        return result != null ? result : delegate.load();
+    }
+
+    @Override
+    public void save(@NonNull S state) {
+        latest = state;
+        pending.set(state);
+        schedule();
+    }
+
+    /**
+     * Writes the pending state, if any, on the scheduler. It completes once the states saved before the subscription
+     * are written, including by a write already in progress.
+     */
+    @NonNull
+    @Override
+    public Completable flush() {
+        return Completable.fromAction(this::write).subscribeOn(scheduler);
+    }
+
+    /**
+     * Writes the pending state, if any, on the calling thread. It blocks on the delegate storage, so call it off the
+     * main thread, e.g. from a background task when the application is about to be stopped.
+     */
+    public void flushNow() {
+        write();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.scheduleDirect(() -> {
+                scheduled.set(false);
+                write();
+            });
+        }
+    }
+
+    /**
+     * Takes the pending state under the lock, so that a state is never overwritten by an older one.
+     */
+    private void write() {
+        synchronized (writeLock) {
+            S state = pending.getAndSet(null);
+            if (state != null) {
+                delegate.save(state);
+            }
+        }
+    }
+}
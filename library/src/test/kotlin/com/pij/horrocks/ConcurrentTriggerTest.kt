@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import io.reactivex.observers.TestObserver
+import io.reactivex.subjects.PublishSubject
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+/**
+ * @author PierreJean
+ */
+class ConcurrentTriggerTest {
+
+    @Test
+    fun `Delivers the events triggered`() {
+        val observer = TestObserver<Int>()
+        val sut = ConcurrentTrigger(observer)
+
+        sut.trigger(1)
+        sut.trigger(2)
+
+        observer.assertValues(1, 2)
+    }
+
+    @Test
+    fun `An event triggered while delivering is delivered after the current one`() {
+        val events = PublishSubject.create<Int>()
+        val sut = ConcurrentTrigger(events)
+        val delivered = mutableListOf<String>()
+        events.subscribe {
+            delivered.add("start $it")
+            if (it == 1) sut.trigger(2)
+            delivered.add("end $it")
+        }
+
+        sut.trigger(1)
+
+        assertEquals(listOf("start 1", "end 1", "start 2", "end 2"), delivered)
+    }
+
+    @Test
+    fun `Delivers the next events after the target threw`() {
+        val delivered = mutableListOf<Int>()
+        val sut = ConcurrentTrigger(object : TestObserver<Int>() {
+            override fun onNext(t: Int) {
+                if (t == 1) throw IllegalStateException("Expected")
+                delivered.add(t)
+            }
+        })
+
+        assertFailsWith<IllegalStateException> { sut.trigger(1) }
+        sut.trigger(2)
+
+        assertEquals(listOf(2), delivered)
+    }
+
+    @Test
+    fun `Delivers all the events of many threads, one at a time, in the order of each thread`() {
+        val threads = 8
+        val eventsPerThread = 10_000
+        val delivered = mutableListOf<Pair<Int, Int>>()
+        var concurrentDeliveries = 0
+        var maxConcurrentDeliveries = 0
+        val events = PublishSubject.create<Pair<Int, Int>>()
+        events.subscribe {
+            // Not thread-safe on purpose: it only works if deliveries are serialized.
+            maxConcurrentDeliveries = maxOf(maxConcurrentDeliveries, ++concurrentDeliveries)
+            delivered.add(it)
+            concurrentDeliveries--
+        }
+        val sut = ConcurrentTrigger(events)
+        val start = CountDownLatch(1)
+        val executor = Executors.newFixedThreadPool(threads)
+
+        repeat(threads) { thread ->
+            executor.execute {
+                start.await()
+                repeat(eventsPerThread) { sut.trigger(thread to it) }
+            }
+        }
+        start.countDown()
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS))
+
+        assertEquals(threads * eventsPerThread, delivered.size)
+        assertEquals(1, maxConcurrentDeliveries)
+        delivered.groupBy({ it.first }, { it.second }).values.forEach {
+            assertEquals((0 until eventsPerThread).toList(), it)
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import io.reactivex.schedulers.TestScheduler
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/**
+ * @author PierreJean
+ */
+class ConflatingEngineTest {
+
+    private val scheduler = TestScheduler()
+    private val metrics = InMemoryMetrics()
+    private val storage = MemoryStorage(0)
+    private val adder = SingleReducerCreator<Int, Int>({ amount -> Reducer { it + amount } }, LevelLogger.OFF)
+    private val configuration = Configuration.builder<Int, Int>()
+            .store(storage)
+            .creators(listOf<ReducerCreator<Int>>(adder))
+            .stateToModel { it }
+            .metrics(metrics)
+            .build()
+    private val lags = mutableListOf<Pair<Int, Int>>()
+    private val catchUps = mutableListOf<Pair<Int, Int>>()
+    private val sut = ConflatingEngine(DefaultEngine<Int, Int>(LevelLogger.OFF), scheduler, 2, object : LagListener {
+        override fun lagging(subscriber: Int, missed: Int) {
+            lags.add(subscriber to missed)
+        }
+
+        override fun caughtUp(subscriber: Int, missed: Int) {
+            catchUps.add(subscriber to missed)
+        }
+    })
+
+    @Test
+    fun `A subscriber gets the models on the scheduler`() {
+        val observer = sut.runWith(configuration).test()
+        observer.assertNoValues()
+
+        scheduler.triggerActions()
+
+        observer.assertValues(0)
+    }
+
+    @Test
+    fun `A slow subscriber does not hold up the reduction`() {
+        sut.runWith(configuration).test()
+
+        adder.trigger(1)
+        adder.trigger(2)
+
+        assertEquals(3, storage.load())
+    }
+
+    @Test
+    fun `A slow subscriber only gets the latest model`() {
+        val observer = sut.runWith(configuration).test()
+        adder.trigger(1)
+        adder.trigger(2)
+
+        scheduler.triggerActions()
+
+        observer.assertValues(3)
+        assertEquals(2, metrics.conflatedModels())
+    }
+
+    @Test
+    fun `Each subscriber has its own slot`() {
+        val first = sut.runWith(configuration).test()
+        scheduler.triggerActions()
+        adder.trigger(1)
+        adder.trigger(2)
+        val second = sut.runWith(configuration).test()
+
+        scheduler.triggerActions()
+
+        first.assertValues(0, 3)
+        second.assertValues(3)
+    }
+
+    @Test
+    fun `A subscriber missing more models than the threshold is reported once`() {
+        sut.runWith(configuration).test()
+
+        adder.trigger(1)
+        adder.trigger(2)
+        adder.trigger(3)
+        adder.trigger(4)
+
+        assertEquals(listOf(1 to 3), lags)
+        assertEquals(1, metrics.laggingSubscribers())
+    }
+
+    @Test
+    fun `A subscriber that caught up is reported again when it lags again`() {
+        sut.runWith(configuration).test()
+        adder.trigger(1)
+        adder.trigger(2)
+        adder.trigger(3)
+        scheduler.triggerActions()
+
+        adder.trigger(4)
+        adder.trigger(5)
+        adder.trigger(6)
+        adder.trigger(7)
+
+        assertEquals(listOf(1 to 3, 1 to 3), lags)
+    }
+
+    @Test
+    fun `A lagging subscriber that catches up is reported with the number of models it missed`() {
+        sut.runWith(configuration).test()
+        adder.trigger(1)
+        adder.trigger(2)
+        adder.trigger(3)
+        adder.trigger(4)
+
+        scheduler.triggerActions()
+
+        assertEquals(listOf(1 to 4), catchUps)
+    }
+
+    @Test
+    fun `A lagging subscriber is reported with its number`() {
+        val fast = sut.runWith(configuration).test()
+        scheduler.triggerActions()
+        sut.runWith(configuration).test()
+        scheduler.triggerActions()
+        fast.dispose()
+
+        adder.trigger(1)
+        adder.trigger(2)
+        adder.trigger(3)
+        adder.trigger(4)
+
+        assertEquals(listOf(2 to 3), lags)
+    }
+
+    @Test
+    fun `A subscriber within the threshold is not reported`() {
+        sut.runWith(configuration).test()
+
+        adder.trigger(1)
+        adder.trigger(2)
+
+        assertEquals(emptyList<Pair<Int, Int>>(), lags)
+    }
+
+    @Test
+    fun `Disposing a subscriber drops its pending model`() {
+        val observer = sut.runWith(configuration).test()
+        adder.trigger(1)
+
+        observer.dispose()
+        scheduler.triggerActions()
+
+        observer.assertNoValues()
+    }
+}
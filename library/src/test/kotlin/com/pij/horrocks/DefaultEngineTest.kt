@@ -15,12 +15,19 @@
 package com.pij.horrocks
 
 import com.pij.utils.SysoutLogger
+import io.reactivex.Completable
 import io.reactivex.Observable
+import io.reactivex.plugins.RxJavaPlugins
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.schedulers.TestScheduler
 import io.reactivex.subjects.PublishSubject
 import io.reactivex.subjects.Subject
+import java.util.Collections
+import java.util.concurrent.TimeUnit
 import kotlin.test.BeforeTest
 import kotlin.test.Test
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
 
 /**
  * Created on 17/11/2017.
@@ -70,6 +77,21 @@ class DefaultEngineTest {
         observer.assertValue(DummyState(false, 23))
     }
 
+    @Test
+    fun `Refuses a configuration setting an option it ignores`() {
+        // given
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .lanes(mapOf(addN to Lane.of(1, 1)))
+                .build()
+
+        // when, then
+        assertFailsWith<IllegalArgumentException> { sut.runWith(configuration) }
+    }
+
     @Test
     fun `An event on a simple Feature emits a single model`() {
         val addN: TriggeredReducerCreator<Int, DummyState> = object : TriggeredReducerCreator<Int, DummyState> {
@@ -300,6 +322,50 @@ class DefaultEngineTest {
         observer.assertValues(false, true, false)
     }
 
+    @Test
+    fun `Engine does not reset a state without transient property set`() {
+        // given
+        val addN = addNCreator()
+        var cleanCount = 0
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .transientResetter { cleanCount++; it.copy(transient = false) }
+                .transientDetector { it.transient }
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        repeat(3) { addN.trigger(1) }
+
+        // then
+        assertEquals(0, cleanCount)
+        observer.assertValueAt(3, DummyState(false, 4))
+    }
+
+    @Test
+    fun `Engine resets a state with a transient property set`() {
+        // given
+        val aReducerCreator = addNCreator()
+        var cleanCount = 0
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(true, 1)))
+                .stateToModel { it }
+                .creators(setOf(aReducerCreator))
+                .transientResetter { cleanCount++; it.copy(transient = false) }
+                .transientDetector { it.transient }
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        aReducerCreator.trigger(1)
+
+        // then
+        assertEquals(1, cleanCount)
+        observer.assertValues(DummyState(false, 1), DummyState(false, 2))
+    }
+
     @Test
     fun `Re-emits the last emitted state for a new Subscriber`() {
         // given
@@ -437,5 +503,633 @@ class DefaultEngineTest {
         assertEquals(1, callCount)
     }
 
-}
+    @Test
+    fun `Batching applies all reducers queued since the last emission in a single state`() {
+        // given
+        val scheduler = TestScheduler()
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .batchingScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        addN.trigger(1)
+        addN.trigger(2)
+        addN.trigger(3)
+        scheduler.triggerActions()
+
+        // then
+        observer.assertValues(DummyState(false, 1), DummyState(false, 7))
+    }
+
+    @Test
+    fun `Batching emits nothing until the batching scheduler runs`() {
+        // given
+        val scheduler = TestScheduler()
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .batchingScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        addN.trigger(1)
+
+        // then
+        observer.assertValues(DummyState(false, 1))
+    }
+
+    @Test
+    fun `Batching emits one state per batch`() {
+        // given
+        val scheduler = TestScheduler()
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .batchingScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        addN.trigger(1)
+        addN.trigger(2)
+        scheduler.triggerActions()
+        addN.trigger(3)
+        scheduler.triggerActions()
+
+        // then
+        observer.assertValues(DummyState(false, 1), DummyState(false, 4), DummyState(false, 7))
+    }
+
+    @Test
+    fun `Batching keeps a transient property set by any reducer of the batch`() {
+        // given
+        val scheduler = TestScheduler()
+        val aReducerCreator: TriggeredReducerCreator<Any, DummyState> = object : TriggeredReducerCreator<Any, DummyState> {
+            private val events: Subject<Any> = PublishSubject.create()
+            override fun trigger(input: Any) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.flatMap { _ ->
+                Observable.just(
+                        Reducer<DummyState> { it.copy(transient = true) },
+                        Reducer { it.copy(nonTransient = 2) }
+                )
+            }
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(aReducerCreator))
+                .transientResetter { it.copy(transient = false) }
+                .batchingScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        aReducerCreator.trigger(1)
+        scheduler.triggerActions()
+
+        // then
+        observer.assertValues(DummyState(false, 1), DummyState(true, 2))
+    }
+
+    @Test
+    fun `Batching saves one state per batch`() {
+        // given
+        val scheduler = TestScheduler()
+        val addN = addNCreator()
+        var saveCount = 0
+        val storage = object : Storage<DummyState> {
+            override fun load() = DummyState(false, 1)
+            override fun save(state: DummyState) {
+                saveCount++
+            }
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(storage)
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .batchingScheduler(scheduler)
+                .build()
+        sut.runWith(configuration).test()
+
+        // when
+        repeat(10) { addN.trigger(1) }
+        scheduler.triggerActions()
+
+        // then
+        assertEquals(2, saveCount)
+    }
+
+    @Test
+    fun `Reduction scheduler applies the reducers only when it runs`() {
+        // given
+        val scheduler = TestScheduler()
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .reductionScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+        scheduler.triggerActions()
+
+        // when
+        addN.trigger(2)
+        observer.assertValues(DummyState(false, 1))
+        scheduler.triggerActions()
+
+        // then
+        observer.assertValues(DummyState(false, 1), DummyState(false, 3))
+    }
+
+    @Test
+    fun `Reduction scheduler applies the reducers of all creators on a single thread`() {
+        // given
+        val reducingThreads = Collections.synchronizedSet(mutableSetOf<Thread>())
+        val first = reducerCreator()
+        val second = reducerCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(first, second))
+                .reductionScheduler(Schedulers.computation())
+                .build()
+        val observer = sut.runWith(configuration).test()
+        val reducer = Reducer<DummyState> {
+            reducingThreads.add(Thread.currentThread())
+            it.copy(nonTransient = it.nonTransient + 1)
+        }
+
+        // when
+        val threads = listOf(first, second).map { creator -> Thread { repeat(100) { creator.trigger(reducer) } } }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+
+        // then
+        observer.awaitCount(201)
+        assertEquals(DummyState(false, 200), observer.values().last())
+        assertEquals(1, reducingThreads.size)
+    }
 
+    @Test
+    fun `Conversion scheduler converts the states only when it runs`() {
+        // given
+        val scheduler = TestScheduler()
+        val storage = MemoryStorage(DummyState(false, 1))
+        val addN = addNCreator()
+        var conversions = 0
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(storage)
+                .stateToModel { conversions++; it }
+                .creators(setOf(addN))
+                .conversionScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        addN.trigger(2)
+
+        // then
+        assertEquals(DummyState(false, 3), storage.load())
+        assertEquals(0, conversions)
+        scheduler.triggerActions()
+        assertEquals(2, conversions)
+        observer.assertValues(DummyState(false, 1), DummyState(false, 3))
+    }
+
+    @Test
+    fun `Delivery scheduler emits the models only when it runs`() {
+        // given
+        val scheduler = TestScheduler()
+        val addN = addNCreator()
+        var conversions = 0
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { conversions++; it }
+                .creators(setOf(addN))
+                .deliveryScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        addN.trigger(2)
+
+        // then
+        assertEquals(2, conversions)
+        observer.assertNoValues()
+        scheduler.triggerActions()
+        observer.assertValues(DummyState(false, 1), DummyState(false, 3))
+    }
+
+    @Test
+    fun `Batching scheduler takes precedence over the reduction scheduler`() {
+        // given
+        val batching = TestScheduler()
+        val reduction = TestScheduler()
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .batchingScheduler(batching)
+                .reductionScheduler(reduction)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        addN.trigger(1)
+        addN.trigger(2)
+        batching.triggerActions()
+
+        // then
+        observer.assertValues(DummyState(false, 1), DummyState(false, 4))
+    }
+
+    @Test
+    fun `Loading scheduler loads the initial state only when it runs`() {
+        // given
+        val scheduler = TestScheduler()
+        var loads = 0
+        val storage = object : Storage<DummyState> {
+            override fun load(): DummyState {
+                loads++
+                return DummyState(false, 1)
+            }
+
+            override fun save(state: DummyState) {}
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(storage)
+                .stateToModel { it }
+                .creators(emptySet())
+                .loadingScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+        assertEquals(0, loads)
+
+        // when
+        scheduler.triggerActions()
+
+        // then
+        assertEquals(1, loads)
+        observer.assertValues(DummyState(false, 1))
+    }
+
+    @Test
+    fun `Loading scheduler subscribes to the creators once the initial state is loaded`() {
+        // given
+        val scheduler = TestScheduler()
+        val events: Subject<Reducer<DummyState>> = PublishSubject.create()
+        val creator = ReducerCreator<DummyState> { events }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(creator))
+                .loadingScheduler(scheduler)
+                .build()
+        sut.runWith(configuration).test()
+        assertEquals(false, events.hasObservers())
+
+        // when
+        scheduler.triggerActions()
+
+        // then
+        assertEquals(true, events.hasObservers())
+    }
+
+    @Test
+    fun `Placeholder is emitted before the initial state is loaded`() {
+        // given
+        val scheduler = TestScheduler()
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .loadingScheduler(scheduler)
+                .placeholder(DummyState(false, 0))
+                .build()
+        val observer = sut.runWith(configuration).test()
+        observer.assertValues(DummyState(false, 0))
+
+        // when
+        scheduler.triggerActions()
+        addN.trigger(2)
+
+        // then
+        observer.assertValues(DummyState(false, 0), DummyState(false, 1), DummyState(false, 3))
+    }
+
+    @Test
+    fun `Placeholder comes before the first version`() {
+        // given
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(emptySet())
+                .placeholder(DummyState(false, 0))
+                .build()
+
+        // when
+        val observer = sut.runVersionedWith(configuration).test()
+
+        // then
+        assertEquals(listOf(-1L, 0L), observer.values().map { it.version() })
+    }
+
+    @Test
+    fun `Disposing the run flushes a flushable storage on the I-O scheduler`() {
+        // given
+        val io = TestScheduler()
+        RxJavaPlugins.setIoSchedulerHandler { io }
+        val storage = object : FlushableStorage<DummyState> {
+            var flushes = 0
+            override fun load() = DummyState(false, 0)
+            override fun save(state: DummyState) {}
+            override fun flush() = Completable.fromAction { flushes++ }
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(storage)
+                .stateToModel { it }
+                .creators(setOf(addNCreator()))
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        try {
+            // when
+            observer.dispose()
+
+            // then
+            assertEquals(0, storage.flushes)
+            io.triggerActions()
+            assertEquals(1, storage.flushes)
+        } finally {
+            RxJavaPlugins.reset()
+        }
+    }
+
+    @Test
+    fun `Versions increase with each new state`() {
+        // given
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .build()
+        val observer = sut.runVersionedWith(configuration).map { it.version() }.test()
+
+        // when
+        repeat(2) { addN.trigger(1) }
+
+        // then
+        observer.assertValues(0L, 1L, 2L)
+    }
+
+    @Test
+    fun `A reducer returning the same state keeps its version`() {
+        // given
+        val creator = reducerCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(creator))
+                .build()
+        val observer = sut.runVersionedWith(configuration).map { it.version() }.test()
+
+        // when
+        creator.trigger(Reducer { it })
+        creator.trigger(Reducer { it.copy(nonTransient = 1) })
+
+        // then
+        observer.assertValues(0L, 0L, 1L)
+    }
+
+    @Test
+    fun `Distinct versions does not emit a state a reducer returned unchanged`() {
+        // given
+        val creator = reducerCreator()
+        var saveCount = 0
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(object : Storage<DummyState> {
+                    override fun load() = DummyState(false, 0)
+                    override fun save(state: DummyState) {
+                        saveCount++
+                    }
+                })
+                .stateToModel { it }
+                .creators(setOf(creator))
+                .distinctVersions(true)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        creator.trigger(Reducer { it })
+        creator.trigger(Reducer { it.copy(nonTransient = 1) })
+
+        // then
+        observer.assertValues(DummyState(false, 0), DummyState(false, 1))
+        assertEquals(2, saveCount)
+    }
+
+    @Test
+    fun `Distinct versions replace the state filter`() {
+        // given
+        val creator = reducerCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(creator))
+                .distinctVersions(true)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        // when
+        creator.trigger(Reducer { it.copy() })
+
+        // then
+        observer.assertValues(DummyState(false, 0), DummyState(false, 0))
+    }
+
+    @Test
+    fun `A configuration cannot set both distinct versions and a state filter`() {
+        assertFailsWith<IllegalArgumentException> {
+            Configuration.builder<DummyState, DummyState>()
+                    .store(MemoryStorage(DummyState(false, 0)))
+                    .stateToModel { it }
+                    .creators(emptyList())
+                    .stateFilter { left, right -> left == right }
+                    .distinctVersions(true)
+                    .build()
+        }
+    }
+
+    @Test
+    fun `Metrics count the reducers of each creator`() {
+        // given
+        val addN = addNCreator()
+        val other = addNCreator()
+        val metrics = InMemoryMetrics()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(listOf(addN, other))
+                .metrics(metrics)
+                .build()
+        sut.runWith(configuration).test()
+
+        // when
+        repeat(3) { addN.trigger(1) }
+        other.trigger(1)
+
+        // then
+        assertEquals(3, metrics.reducerCount(addN))
+        assertEquals(1, metrics.reducerCount(other))
+    }
+
+    @Test
+    fun `Metrics time every stage of each state`() {
+        // given
+        val addN = addNCreator()
+        val metrics = InMemoryMetrics()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .metrics(metrics)
+                .build()
+        sut.runWith(configuration).test()
+
+        // when
+        repeat(2) { addN.trigger(1) }
+
+        // then
+        assertEquals(2, metrics.histogram(EngineMetrics.Stage.REDUCTION).count())
+        assertEquals(3, metrics.histogram(EngineMetrics.Stage.CLEANING).count())
+        assertEquals(2, metrics.histogram(EngineMetrics.Stage.FILTERING).count())
+        assertEquals(4, metrics.histogram(EngineMetrics.Stage.STORAGE).count())
+        assertEquals(3, metrics.histogram(EngineMetrics.Stage.CONVERSION).count())
+        assertEquals(3, metrics.histogram(EngineMetrics.Stage.EMISSION).count())
+    }
+
+    @Test
+    fun `Metrics report the hit rate of the state filter`() {
+        // given
+        val creator = reducerCreator()
+        val metrics = InMemoryMetrics()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(creator))
+                .stateFilter { left, right -> left === right }
+                .metrics(metrics)
+                .build()
+        sut.runWith(configuration).test()
+
+        // when
+        creator.trigger(Reducer { it })
+        creator.trigger(Reducer { it.copy(nonTransient = 1) })
+
+        // then
+        assertEquals(0.5, metrics.filterHitRate())
+    }
+
+    @Test
+    fun `History records the initial state and each reduced state`() {
+        // given
+        val addN = addNCreator()
+        val history = StateHistory<DummyState>(10)
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .history(history)
+                .build()
+        sut.runWith(configuration).test()
+
+        // when
+        repeat(2) { addN.trigger(1) }
+
+        // then
+        assertEquals(listOf(null, addN, addN), history.entries().map { it.origin() })
+        assertEquals(listOf(0, 1, 2), history.entries().map { it.state().nonTransient })
+    }
+
+    @Test
+    fun `Jumping back in history emits the past state without recording it`() {
+        // given
+        val addN = addNCreator()
+        val history = StateHistory<DummyState>(10)
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .history(history)
+                .build()
+        val observer = sut.runWith(configuration).test()
+        repeat(2) { addN.trigger(1) }
+
+        // when
+        history.jumpTo(1)
+
+        // then
+        observer.assertValueAt(3, DummyState(false, 1))
+        assertEquals(3, history.size())
+    }
+
+    @Test
+    fun `A creator with a retry policy is subscribed to again after failing`() {
+        // given
+        val scheduler = TestScheduler()
+        var subscriptions = 0
+        val failing = object : ReducerCreator<DummyState> {
+            override fun reducers(): Observable<Reducer<DummyState>> = Observable.defer {
+                subscriptions++
+                Observable.error<Reducer<DummyState>>(IllegalStateException("Expected"))
+            }
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(failing))
+                .retryPolicies(mapOf<ReducerCreator<DummyState>, RetryPolicy>(
+                        failing to RetryPolicy.exponentialBackoff(1, 10, TimeUnit.SECONDS, scheduler)))
+                .build()
+        sut.runWith(configuration).test()
+
+        // when
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+
+        // then
+        assertEquals(2, subscriptions)
+    }
+
+    private fun reducerCreator(): TriggeredReducerCreator<Reducer<DummyState>, DummyState> {
+        return object : TriggeredReducerCreator<Reducer<DummyState>, DummyState> {
+            private val events: Subject<Reducer<DummyState>> = PublishSubject.create()
+            override fun trigger(input: Reducer<DummyState>) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events
+        }
+    }
+
+    private fun addNCreator(): TriggeredReducerCreator<Int, DummyState> {
+        return object : TriggeredReducerCreator<Int, DummyState> {
+            private val events: Subject<Int> = PublishSubject.create()
+            override fun trigger(input: Int) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.map { input ->
+                Reducer<DummyState> { it.copy(nonTransient = input + it.nonTransient) }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import com.pij.utils.Logger
+import io.reactivex.Observable
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.PublishSubject
+import io.reactivex.subjects.Subject
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+/**
+ * @author PierreJean
+ */
+class DiffingEngineTest {
+
+    data class DummyModel(val items: List<String>, val title: String)
+
+    private val scheduler = TestScheduler()
+    private val creator = object : TriggeredReducerCreator<Reducer<DummyModel>, DummyModel> {
+        private val events: Subject<Reducer<DummyModel>> = PublishSubject.create()
+        override fun trigger(input: Reducer<DummyModel>) = events.onNext(input)
+        override fun reducers(): Observable<Reducer<DummyModel>> = events
+    }
+    private val configuration = Configuration.builder<DummyModel, DummyModel>()
+            .store(MemoryStorage(DummyModel(listOf("a", "b"), "title")))
+            .stateToModel { it }
+            .creators(setOf(creator))
+            .build()
+    private val sut = DiffingEngine<DummyModel, DummyModel>(DefaultEngine(Logger.NOOP), scheduler, Selector<DummyModel, List<String>> { it.items })
+
+    @Test
+    fun `The first change inserts all items`() {
+        val observer = sut.runWith(configuration).test()
+
+        scheduler.triggerActions()
+
+        val change = observer.values().single()
+        assertNull(change.previous())
+        assertEquals(listOf(ListPatch.Operation.create(ListPatch.Type.INSERT, 0, 2)), change.patches()[0].operations())
+    }
+
+    @Test
+    fun `Changes are calculated on the scheduler`() {
+        val observer = sut.runWith(configuration).test()
+
+        observer.assertNoValues()
+    }
+
+    @Test
+    fun `A change holds the previous model and the patch of the list`() {
+        val observer = sut.runWith(configuration).test()
+        scheduler.triggerActions()
+
+        creator.trigger(Reducer { it.copy(items = it.items + "c") })
+        scheduler.triggerActions()
+
+        val change = observer.values()[1]
+        assertEquals(DummyModel(listOf("a", "b"), "title"), change.previous())
+        assertEquals(DummyModel(listOf("a", "b", "c"), "title"), change.current())
+        assertEquals(listOf(ListPatch.Operation.create(ListPatch.Type.INSERT, 2, 1)), change.patches()[0].operations())
+    }
+
+    @Test
+    fun `A change of another property has an empty patch`() {
+        val observer = sut.runWith(configuration).test()
+        scheduler.triggerActions()
+
+        creator.trigger(Reducer { it.copy(title = "other") })
+        scheduler.triggerActions()
+
+        val change = observer.values()[1]
+        assertSame(change.previous()!!.items, change.current().items)
+        assertEquals(true, change.patches()[0].isEmpty)
+    }
+}
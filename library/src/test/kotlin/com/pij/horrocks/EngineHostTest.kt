@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import io.reactivex.schedulers.TestScheduler
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+/**
+ * @author PierreJean
+ */
+class EngineHostTest {
+
+    private class Counter(storage: Storage<Int>) : HostedSession<Int, Int> {
+        val adder = SingleReducerCreator<Int, Int>({ amount -> Reducer { it + amount } }, LevelLogger.OFF)
+        private val configuration = Configuration.builder<Int, Int>()
+                .store(storage)
+                .creators(listOf<ReducerCreator<Int>>(adder))
+                .stateToModel { it }
+                .build()
+
+        override fun configuration() = configuration
+    }
+
+    private val scheduler = TestScheduler()
+    private val storages = mutableMapOf<String, MemoryStorage<Int>>()
+    private val sut = EngineHost<String, Int, Int, Counter>(DefaultEngine(LevelLogger.OFF),
+            SessionFactory { key -> Counter(storages.getOrPut(key) { MemoryStorage(0) }) },
+            scheduler, 10, TimeUnit.SECONDS, Weigher { it.toLong() }, LevelLogger.OFF)
+
+    @Test
+    fun `Dispatch runs the action on the scheduler`() {
+        sut.dispatch("a") { it.adder.trigger(3) }
+        assertEquals(0, storages.getValue("a").load())
+
+        scheduler.triggerActions()
+
+        assertEquals(3, storages.getValue("a").load())
+    }
+
+    @Test
+    fun `Sessions of different keys have different states`() {
+        sut.dispatch("a") { it.adder.trigger(3) }
+        sut.dispatch("b") { it.adder.trigger(5) }
+        scheduler.triggerActions()
+
+        sut.models("a").test().assertValue(3)
+        sut.models("b").test().assertValue(5)
+    }
+
+    @Test
+    fun `Stats report the pending actions and the weight`() {
+        sut.dispatch("a") { it.adder.trigger(3) }
+        sut.dispatch("a") { it.adder.trigger(4) }
+        assertEquals(SessionStats.create(2, 2, 0, 0), sut.stats("a"))
+
+        scheduler.triggerActions()
+
+        assertEquals(SessionStats.create(0, 2, 0, 7), sut.stats("a"))
+    }
+
+    @Test
+    fun `A failing action does not stop the session`() {
+        sut.dispatch("a") { throw IllegalStateException("Expected") }
+        sut.dispatch("a") { it.adder.trigger(3) }
+
+        scheduler.triggerActions()
+
+        assertEquals(3, storages.getValue("a").load())
+    }
+
+    @Test
+    fun `An idle session is evicted`() {
+        sut.dispatch("a") { it.adder.trigger(3) }
+
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS)
+
+        assertNull(sut.stats("a"))
+        assertEquals(0, sut.sessionCount())
+    }
+
+    @Test
+    fun `An evicted session restarts from its stored state`() {
+        sut.dispatch("a") { it.adder.trigger(3) }
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS)
+
+        sut.dispatch("a") { it.adder.trigger(4) }
+        scheduler.triggerActions()
+
+        sut.models("a").test().assertValue(7)
+    }
+
+    @Test
+    fun `An observed session is not evicted`() {
+        sut.models("a").test()
+
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS)
+
+        assertEquals(1, sut.sessionCount())
+    }
+
+    @Test
+    fun `A session is evicted once no longer observed`() {
+        val observer = sut.models("a").test()
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS)
+
+        observer.dispose()
+        scheduler.advanceTimeBy(20, TimeUnit.SECONDS)
+
+        assertEquals(0, sut.sessionCount())
+    }
+
+    @Test
+    fun `Dispose stops all sessions`() {
+        sut.dispatch("a") { it.adder.trigger(3) }
+        sut.dispatch("b") { it.adder.trigger(5) }
+
+        sut.dispose()
+
+        assertEquals(0, sut.sessionCount())
+    }
+
+    @Test
+    fun `Dispose completes the models of the observed sessions`() {
+        val observer = sut.models("a").test()
+
+        sut.dispose()
+
+        observer.assertComplete()
+    }
+
+    @Test
+    fun `Dispatching to a disposed host fails`() {
+        sut.dispose()
+
+        assertFailsWith<IllegalStateException> { sut.dispatch("a") { it.adder.trigger(3) } }
+        assertEquals(0, sut.sessionCount())
+    }
+
+    @Test
+    fun `Observing a disposed host fails`() {
+        sut.dispose()
+
+        sut.models("a").test().assertError(IllegalStateException::class.java)
+        assertEquals(0, sut.sessionCount())
+    }
+
+    @Test
+    fun `An action pending when the host is disposed is dropped rather than run without session`() {
+        val sessions = mutableListOf<Counter?>()
+        sut.dispatch("a") { sessions.add(it) }
+        sut.dispose()
+
+        scheduler.triggerActions()
+
+        assertEquals(emptyList<Counter?>(), sessions)
+    }
+}
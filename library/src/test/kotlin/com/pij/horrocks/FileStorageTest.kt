@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import java.io.*
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+
+/**
+ * @author PierreJean
+ */
+class FileStorageTest {
+
+    private val directory = createTempDir()
+    private val file = File(directory, "state")
+    private val serializer = object : StateSerializer<String> {
+        override fun write(state: String, output: OutputStream) = DataOutputStream(output).writeUTF(state)
+        override fun read(input: InputStream): String = DataInputStream(input).readUTF()
+    }
+
+    @AfterTest
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun `Load provides the initial state when nothing was saved`() {
+        val sut = FileStorage(file, serializer, "initial")
+
+        assertEquals("initial", sut.load())
+    }
+
+    @Test
+    fun `Load provides the saved state`() {
+        val sut = FileStorage(file, serializer, "initial")
+
+        sut.save("saved")
+
+        assertEquals("saved", sut.load())
+    }
+
+    @Test
+    fun `A new storage on the same file loads the saved state`() {
+        FileStorage(file, serializer, "initial").save("saved")
+
+        assertEquals("saved", FileStorage(file, serializer, "initial").load())
+    }
+
+    @Test
+    fun `Save leaves no temporary file`() {
+        FileStorage(file, serializer, "initial").save("saved")
+
+        assertEquals(listOf("state"), directory.list().toList())
+    }
+
+    @Test
+    fun `A failed save leaves the previous state`() {
+        val sut = FileStorage(file, serializer, "initial")
+        sut.save("first")
+        val failing = FileStorage(file, object : StateSerializer<String> {
+            override fun write(state: String, output: OutputStream) = throw IOException("full disk")
+            override fun read(input: InputStream) = serializer.read(input)
+        }, "initial")
+
+        assertFailsWith<IllegalStateException> { failing.save("second") }
+
+        assertEquals("first", sut.load())
+        assertFalse(File(directory, "state.tmp").exists())
+    }
+
+    @Test
+    fun `Load fails on a corrupted file`() {
+        file.writeBytes(byteArrayOf(0, 10, 1))
+        val sut = FileStorage(file, serializer, "initial")
+
+        assertFailsWith<IllegalStateException> { sut.load() }
+    }
+}
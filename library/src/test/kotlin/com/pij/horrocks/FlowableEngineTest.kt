@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import com.pij.utils.SysoutLogger
+import io.reactivex.Flowable
+import io.reactivex.Observable
+import io.reactivex.subjects.PublishSubject
+import io.reactivex.subjects.Subject
+import kotlin.test.BeforeTest
+import kotlin.test.Test
+import kotlin.test.assertFailsWith
+
+/**
+ * @author PierreJean
+ */
+class FlowableEngineTest {
+
+    data class DummyState(val transient: Boolean, val nonTransient: Int)
+
+    private lateinit var sut: FlowableEngine<DummyState, DummyState>
+
+    @BeforeTest
+    fun setUp() {
+        sut = FlowableEngine(SysoutLogger())
+    }
+
+    @Test
+    fun `Emits the initial state even without registered Features`() {
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(emptyList())
+                .build()
+
+        val subscriber = sut.runWith(configuration).test()
+
+        subscriber.assertValue(DummyState(false, 1))
+    }
+
+    @Test
+    fun `Refuses a configuration setting an option it ignores`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .lanes(mapOf(addN to Lane.of(1, 1)))
+                .build()
+
+        assertFailsWith<IllegalArgumentException> { sut.runWith(configuration) }
+    }
+
+    @Test
+    fun `An event on a simple Feature emits a single model`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 23)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .build()
+        val subscriber = sut.runWith(configuration).test()
+
+        addN.trigger(1)
+
+        subscriber.assertValues(DummyState(false, 23), DummyState(false, 24))
+    }
+
+    @Test
+    fun `Emits no model beyond the view's demand`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .build()
+        val subscriber = sut.runWith(configuration).test(1)
+
+        addN.trigger(1)
+        addN.trigger(2)
+
+        subscriber.assertValues(DummyState(false, 0))
+    }
+
+    @Test
+    fun `Applies buffered reducers when the view requests more models`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .build()
+        val subscriber = sut.runWith(configuration).test(1)
+        addN.trigger(1)
+        addN.trigger(2)
+
+        subscriber.request(2)
+
+        subscriber.assertValues(DummyState(false, 0), DummyState(false, 1), DummyState(false, 3))
+    }
+
+    @Test
+    fun `Latest overflow strategy only applies the last pending reducer`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .overflows(mapOf(addN to Overflow.latest()))
+                .build()
+        val subscriber = sut.runWith(configuration).test(1)
+        addN.trigger(1)
+        addN.trigger(10)
+        addN.trigger(100)
+
+        subscriber.request(Long.MAX_VALUE)
+
+        // the 1st reducer was already prefetched when the others arrived
+        subscriber.assertValues(DummyState(false, 0), DummyState(false, 1), DummyState(false, 101))
+    }
+
+    @Test
+    fun `Drop-oldest overflow strategy drops the oldest pending reducers`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .overflows(mapOf(addN to Overflow.dropOldest(2)))
+                .build()
+        val subscriber = sut.runWith(configuration).test(1)
+        addN.trigger(1)
+        addN.trigger(10)
+        addN.trigger(100)
+        addN.trigger(1000)
+
+        subscriber.request(Long.MAX_VALUE)
+
+        subscriber.assertValues(DummyState(false, 0), DummyState(false, 1), DummyState(false, 101), DummyState(false, 1101))
+    }
+
+    @Test
+    fun `Bounded buffer overflow applies the error reducer`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .defaultOverflow(Overflow.bufferBounded(1))
+                .errorReducerFactory { Reducer { current -> current.copy(transient = true) } }
+                .build()
+        val subscriber = sut.runWith(configuration).test(1)
+        addN.trigger(1)
+        addN.trigger(10)
+        addN.trigger(100)
+
+        subscriber.request(Long.MAX_VALUE)
+
+        subscriber.assertNoErrors()
+        subscriber.assertValueAt(subscriber.valueCount() - 1) { it.transient }
+    }
+
+    @Test
+    fun `Bounded buffer overflow applies the buffered reducers then stops the creator`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .defaultOverflow(Overflow.bufferBounded(1))
+                .errorReducerFactory { Reducer { current -> current.copy(transient = true) } }
+                .build()
+        val subscriber = sut.runWith(configuration).test(1)
+        addN.trigger(1)
+        addN.trigger(10)
+        addN.trigger(100)
+
+        subscriber.request(Long.MAX_VALUE)
+        addN.trigger(1000)
+
+        subscriber.assertValues(DummyState(false, 0), DummyState(false, 1), DummyState(false, 11),
+                DummyState(true, 11))
+    }
+
+    @Test
+    fun `By default, a burst of reducers does not stop the creator`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .errorReducerFactory { Reducer { current -> current.copy(transient = true) } }
+                .build()
+        val subscriber = sut.runWith(configuration).test(1)
+        repeat(Flowable.bufferSize() * 2) { addN.trigger(1) }
+
+        subscriber.request(Long.MAX_VALUE)
+        addN.trigger(1000)
+
+        subscriber.assertNoErrors()
+        subscriber.assertValueAt(subscriber.valueCount() - 1) { !it.transient && it.nonTransient > 1000 }
+        subscriber.assertNever { it.transient }
+    }
+
+    private fun addNCreator(): TriggeredReducerCreator<Int, DummyState> {
+        return object : TriggeredReducerCreator<Int, DummyState> {
+            private val events: Subject<Int> = PublishSubject.create()
+            override fun trigger(input: Int) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.map { input ->
+                Reducer<DummyState> { it.copy(nonTransient = input + it.nonTransient) }
+            }
+        }
+    }
+}
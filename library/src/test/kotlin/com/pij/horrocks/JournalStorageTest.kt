@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import java.io.*
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/**
+ * @author PierreJean
+ */
+class JournalStorageTest {
+
+    private val directory = createTempDir()
+    private var snapshotCount = 0
+    private val serializer = object : StateSerializer<String> {
+        override fun write(state: String, output: OutputStream) {
+            snapshotCount++
+            DataOutputStream(output).writeUTF(state)
+        }
+
+        override fun read(input: InputStream): String = DataInputStream(input).readUTF()
+    }
+
+    /**
+     * States only grow: a delta is the text appended.
+     */
+    private val codec = object : DeltaCodec<String> {
+        override fun encode(previous: String, next: String) = next.substring(previous.length).toByteArray()
+        override fun apply(state: String, delta: ByteArray) = state + String(delta)
+    }
+
+    private fun journalStorage(snapshotInterval: Int = 1000, journalSize: Int = 1024) =
+            JournalStorage(directory, serializer, codec, "", snapshotInterval, journalSize)
+
+    @AfterTest
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Test
+    fun `Load provides the initial state when nothing was saved`() {
+        assertEquals("", journalStorage().load())
+    }
+
+    @Test
+    fun `Load provides the saved state`() {
+        val sut = journalStorage()
+
+        sut.save("a")
+        sut.save("ab")
+
+        assertEquals("ab", sut.load())
+    }
+
+    @Test
+    fun `Saves append deltas rather than snapshots`() {
+        val sut = journalStorage()
+
+        sut.save("a")
+        sut.save("ab")
+        sut.save("abc")
+
+        assertEquals(0, snapshotCount)
+    }
+
+    @Test
+    fun `A new storage on the same directory rebuilds the state from the journal`() {
+        journalStorage().apply {
+            save("a")
+            save("ab")
+        }
+
+        assertEquals("ab", journalStorage().load())
+    }
+
+    @Test
+    fun `A snapshot is taken every snapshot interval`() {
+        val sut = journalStorage(snapshotInterval = 2)
+
+        listOf("a", "ab", "abc", "abcd", "abcde").forEach { sut.save(it) }
+
+        assertEquals(1, snapshotCount)
+    }
+
+    @Test
+    fun `A new storage rebuilds the state from the snapshot and the journal that follows it`() {
+        journalStorage(snapshotInterval = 2).apply {
+            listOf("a", "ab", "abc", "abcd").forEach { save(it) }
+        }
+
+        assertEquals("abcd", journalStorage(snapshotInterval = 2).load())
+    }
+
+    @Test
+    fun `A delta larger than the journal is saved in a snapshot`() {
+        val large = "x".repeat(100)
+        journalStorage(journalSize = 64).save(large)
+
+        assertEquals(1, snapshotCount)
+        assertEquals(large, journalStorage(journalSize = 64).load())
+    }
+
+    @Test
+    fun `A torn record ends the journal`() {
+        journalStorage().apply {
+            save("a")
+            save("ab")
+        }
+        RandomAccessFile(File(directory, "journal-0"), "rw").use {
+            // Corrupts the delta of the second record.
+            it.seek(8 + 1 + 8)
+            it.write('z'.toInt())
+        }
+
+        assertEquals("a", journalStorage().load())
+    }
+
+    @Test
+    fun `Saves after a torn record replace it`() {
+        journalStorage().apply {
+            save("a")
+            save("ab")
+        }
+        RandomAccessFile(File(directory, "journal-0"), "rw").use {
+            it.seek(8 + 1 + 8)
+            it.write('z'.toInt())
+        }
+        journalStorage().save("ac")
+
+        assertEquals("ac", journalStorage().load())
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+/**
+ * @author PierreJean
+ */
+class LaneQueueTest {
+
+    private fun LaneQueue<String, String>.drain() = generateSequence { poll() }.toList()
+
+    @Test
+    fun `Sources without lane share a queue in order`() {
+        val sut = LaneQueue<String, String>(listOf("a", "b"), emptyMap())
+
+        sut.queueOf("a").offer("a1")
+        sut.queueOf("b").offer("b1")
+        sut.queueOf("a").offer("a2")
+
+        assertEquals(listOf("a1", "b1", "a2"), sut.drain())
+    }
+
+    @Test
+    fun `Polls the higher priority lane first`() {
+        val sut = LaneQueue<String, String>(listOf("low", "high"), mapOf("high" to Lane.of(1, 1)))
+
+        sut.queueOf("low").offer("low1")
+        sut.queueOf("high").offer("high1")
+        sut.queueOf("high").offer("high2")
+
+        assertEquals(listOf("high1", "high2", "low1"), sut.drain())
+    }
+
+    @Test
+    fun `Polls the sources of a lane in turn, up to their quota`() {
+        val sut = LaneQueue<String, String>(listOf("a", "b"), mapOf("a" to Lane.of(1, 2), "b" to Lane.of(1, 1)))
+
+        repeat(4) { sut.queueOf("a").offer("a$it") }
+        repeat(2) { sut.queueOf("b").offer("b$it") }
+
+        assertEquals(listOf("a0", "a1", "b0", "a2", "a3", "b1"), sut.drain())
+    }
+
+    @Test
+    fun `A source alone with items in its lane is polled beyond its quota`() {
+        val sut = LaneQueue<String, String>(listOf("a", "b"), mapOf("a" to Lane.of(1, 1), "b" to Lane.of(1, 1)))
+
+        repeat(3) { sut.queueOf("a").offer("a$it") }
+
+        assertEquals(listOf("a0", "a1", "a2"), sut.drain())
+    }
+
+    @Test
+    fun `Clear empties all lanes`() {
+        val sut = LaneQueue<String, String>(listOf("a", "b"), mapOf("a" to Lane.of(1, 1)))
+        sut.queueOf("a").offer("a")
+        sut.queueOf("b").offer("b")
+
+        sut.clear()
+
+        assertNull(sut.poll())
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/**
+ * @author PierreJean
+ */
+class LatencyHistogramTest {
+
+    private val sut = LatencyHistogram()
+
+    @Test
+    fun `An empty histogram reports 0`() {
+        assertEquals(0, sut.count())
+        assertEquals(0, sut.max())
+        assertEquals(0, sut.valueAtPercentile(99.0))
+    }
+
+    @Test
+    fun `Small values are recorded exactly`() {
+        (1L..10L).forEach { sut.record(it) }
+
+        assertEquals(10, sut.count())
+        assertEquals(5, sut.valueAtPercentile(50.0))
+        assertEquals(10, sut.valueAtPercentile(100.0))
+    }
+
+    @Test
+    fun `Large values are recorded within 1 32nd`() {
+        sut.record(1_000_000)
+
+        val recorded = sut.valueAtPercentile(50.0)
+        assert(recorded <= 1_000_000 && recorded > 1_000_000 - 1_000_000 / 32) { "$recorded" }
+    }
+
+    @Test
+    fun `Percentiles separate the slow values from the rest`() {
+        repeat(99) { sut.record(1_024) }
+        sut.record(5_000_000)
+
+        assertEquals(1_024, sut.valueAtPercentile(99.0))
+        assertEquals(5_000_000, sut.max())
+    }
+
+    @Test
+    fun `Every value maps to a bucket starting at or below it`() {
+        listOf(0L, 31L, 32L, 33L, 63L, 64L, 1L shl 40, Long.MAX_VALUE).forEach {
+            val start = LatencyHistogram.valueOf(LatencyHistogram.indexOf(it))
+            assert(start <= it && it - start <= it / 32) { "$it -> $start" }
+        }
+    }
+
+    @Test
+    fun `Reset forgets all values`() {
+        sut.record(1_000)
+
+        sut.reset()
+
+        assertEquals(0, sut.count())
+        assertEquals(0, sut.valueAtPercentile(50.0))
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import com.pij.utils.Logger
+import org.mockito.ArgumentMatchers.*
+import org.mockito.Mockito.*
+import kotlin.test.Test
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+/**
+ * @author PierreJean
+ */
+class LevelLoggerTest {
+
+    private val loggerMock = mock(Logger::class.java)
+
+    @Test
+    fun `Prints messages at the threshold`() {
+        val sut = LevelLogger.create(loggerMock, LogLevel.DEBUG)
+
+        sut.print(LogLevel.DEBUG, javaClass, "message %s", "argument")
+
+        verify(loggerMock).print(any(), eq("message %s"), eq("argument"))
+    }
+
+    @Test
+    fun `Does not print messages below the threshold`() {
+        val sut = LevelLogger.create(loggerMock, LogLevel.DEBUG)
+
+        sut.print(LogLevel.VERBOSE, javaClass, "message %s", "argument")
+
+        verifyZeroInteractions(loggerMock)
+    }
+
+    @Test
+    fun `OFF prints no error`() {
+        LevelLogger.create(loggerMock, LogLevel.OFF).print(LogLevel.ERROR, javaClass, RuntimeException(), "failure %d", 1)
+
+        verifyZeroInteractions(loggerMock)
+    }
+
+    @Test
+    fun `isLoggable() is false below the threshold and true above`() {
+        val sut = LevelLogger.create(loggerMock, LogLevel.WARN)
+
+        assertFalse(sut.isLoggable(LogLevel.DEBUG))
+        assertTrue(sut.isLoggable(LogLevel.ERROR))
+    }
+
+    @Test
+    fun `Does not evaluate the lazy argument of a message below the threshold`() {
+        val sut = LevelLogger.create(loggerMock, LogLevel.WARN)
+
+        sut.print(LogLevel.VERBOSE, javaClass, "message %s", LevelLogger.Argument { throw AssertionError("evaluated") })
+    }
+
+    @Test
+    fun `Evaluates the lazy argument of a printed message`() {
+        val sut = LevelLogger.verbose(loggerMock)
+
+        sut.print(LogLevel.VERBOSE, javaClass, "message %s", LevelLogger.Argument { "evaluated" })
+
+        verify(loggerMock).print(any(), anyString(), eq("evaluated"))
+    }
+
+    @Test
+    fun `Sampling prints one in rate verbose messages`() {
+        val sut = LevelLogger.verbose(loggerMock).sampled(3)
+
+        repeat(7) { sut.print(LogLevel.VERBOSE, javaClass, "message %d", it) }
+
+        verify(loggerMock, times(3)).print(any(), anyString(), anyInt())
+    }
+
+    @Test
+    fun `Sampling prints all warnings`() {
+        val sut = LevelLogger.verbose(loggerMock).sampled(3)
+
+        repeat(7) { sut.print(LogLevel.WARN, javaClass, "message %d", it) }
+
+        verify(loggerMock, times(7)).print(any(), anyString(), anyInt())
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+/**
+ * @author PierreJean
+ */
+class ListDiffTest {
+
+    /**
+     * Applies the patch, taking the inserted items from the current list.
+     */
+    private fun <T> ListPatch.applyTo(previous: List<T>, current: List<T>): List<T> {
+        val result = previous.toMutableList()
+        dispatchTo(object : ListPatch.Callback {
+            override fun onInserted(position: Int, count: Int) {
+                result.addAll(position, current.subList(position, position + count))
+            }
+
+            override fun onRemoved(position: Int, count: Int) {
+                repeat(count) { result.removeAt(position) }
+            }
+        })
+        return result
+    }
+
+    private fun operation(type: ListPatch.Type, position: Int, count: Int) = ListPatch.Operation.create(type, position, count)
+
+    @Test
+    fun `The same list has no patch`() {
+        val list = listOf(1, 2, 3)
+
+        assertTrue(ListDiff.between(list, list).isEmpty)
+    }
+
+    @Test
+    fun `Equal lists have no patch`() {
+        assertTrue(ListDiff.between(listOf(1, 2, 3), listOf(1, 2, 3)).isEmpty)
+    }
+
+    @Test
+    fun `An item inserted in the middle is a single insertion`() {
+        val patch = ListDiff.between(listOf(1, 2, 3), listOf(1, 2, 9, 3))
+
+        assertEquals(listOf(operation(ListPatch.Type.INSERT, 2, 1)), patch.operations())
+    }
+
+    @Test
+    fun `Consecutive items removed are a single removal`() {
+        val patch = ListDiff.between((0 until 10).toList(), listOf(0, 1, 7, 8, 9))
+
+        assertEquals(listOf(operation(ListPatch.Type.REMOVE, 2, 5)), patch.operations())
+    }
+
+    @Test
+    fun `A replaced item is a removal and an insertion`() {
+        val patch = ListDiff.between(listOf(1, 2, 3), listOf(1, 9, 3))
+
+        assertEquals(2, patch.operations().size)
+        assertEquals(listOf(1, 9, 3), patch.applyTo(listOf(1, 2, 3), listOf(1, 9, 3)))
+    }
+
+    @Test
+    fun `Patches turn random lists into each other`() {
+        val random = Random(42)
+        repeat(200) {
+            val previous = List(random.nextInt(50)) { random.nextInt(10) }
+            val current = previous.toMutableList().apply {
+                repeat(random.nextInt(10)) {
+                    if (isNotEmpty() && random.nextBoolean()) removeAt(random.nextInt(size))
+                    else add(random.nextInt(size + 1), random.nextInt(10))
+                }
+            }
+
+            assertEquals(current, ListDiff.between(previous, current).applyTo(previous, current))
+        }
+    }
+
+    @Test
+    fun `A single update of a large list is only diffed around the update`() {
+        val previous = (0 until 50000).toList()
+        val current = previous.toMutableList().apply { set(25000, -1) }
+
+        val patch = ListDiff.between(previous, current)
+
+        assertEquals(listOf(operation(ListPatch.Type.REMOVE, 25000, 1), operation(ListPatch.Type.INSERT, 25000, 1)),
+                patch.operations())
+    }
+
+    @Test
+    fun `Unrelated large lists are replaced`() {
+        val previous = (0 until 5000).toList()
+        val current = (5000 until 10000).toList()
+
+        val patch = ListDiff.between(previous, current)
+
+        assertEquals(listOf(operation(ListPatch.Type.REMOVE, 0, 5000), operation(ListPatch.Type.INSERT, 0, 5000)),
+                patch.operations())
+    }
+}
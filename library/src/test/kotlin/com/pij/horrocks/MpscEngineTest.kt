@@ -0,0 +1,338 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import com.pij.utils.Logger
+import io.reactivex.Observable
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.PublishSubject
+import io.reactivex.subjects.Subject
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.BeforeTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+/**
+ * @author PierreJean
+ */
+class MpscEngineTest {
+
+    data class DummyState(val transient: Boolean, val nonTransient: Int)
+
+    private lateinit var sut: MpscEngine<DummyState, DummyState>
+
+    @BeforeTest
+    fun setUp() {
+        sut = MpscEngine(Logger.NOOP)
+    }
+
+    @Test
+    fun `Emits the initial state even without registered Features`() {
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(emptyList())
+                .build()
+
+        val observer = sut.runWith(configuration).test()
+
+        observer.assertValue(DummyState(false, 1))
+    }
+
+    @Test
+    fun `Refuses a configuration setting an option it ignores`() {
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(emptyList())
+                .reductionScheduler(TestScheduler())
+                .build()
+
+        assertFailsWith<IllegalArgumentException> { sut.runWith(configuration) }
+    }
+
+    @Test
+    fun `An event on a simple Feature emits a single model`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 23)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        addN.trigger(1)
+
+        observer.assertValues(DummyState(false, 23), DummyState(false, 24))
+    }
+
+    @Test
+    fun `Event on a Feature emitting 2 reducers per event emits 2 models`() {
+        val addAtStartAndStop: TriggeredReducerCreator<Int, DummyState> = object : TriggeredReducerCreator<Int, DummyState> {
+            private val events: Subject<Int> = PublishSubject.create()
+            override fun trigger(input: Int) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.flatMap { input ->
+                Observable.just(
+                        Reducer<DummyState> { it.copy(nonTransient = input + it.nonTransient) },
+                        Reducer { it.copy(nonTransient = 2 * input + it.nonTransient) }
+                )
+            }
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addAtStartAndStop))
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        addAtStartAndStop.trigger(1)
+
+        observer.assertValues(DummyState(false, 1), DummyState(false, 2), DummyState(false, 4))
+    }
+
+    @Test
+    fun `Same consecutive state is emitted 2ce with the default state filter`() {
+        val same = sameStateCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 23)))
+                .stateToModel { it }
+                .creators(setOf(same))
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        same.trigger(Any())
+
+        observer.assertValueCount(2)
+    }
+
+    @Test
+    fun `Same consecutive state is emitted 1ce with 'same' state filter`() {
+        val same = sameStateCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 23)))
+                .stateToModel { it }
+                .creators(setOf(same))
+                .stateFilter { left, right -> left == right }
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        same.trigger(Any())
+
+        observer.assertValueCount(1)
+    }
+
+    @Test
+    fun `Emits with altered state when a feature fails to construct a Reducer and a custom error reducer is used`() {
+        val failing: TriggeredReducerCreator<Any, DummyState> = object : TriggeredReducerCreator<Any, DummyState> {
+            private val events: Subject<Any> = PublishSubject.create()
+            override fun trigger(input: Any) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.map { throw IllegalStateException("zap") }
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 23)))
+                .stateToModel { it }
+                .creators(setOf(failing))
+                .errorReducerFactory { Reducer { current -> current.copy(transient = true) } }
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        failing.trigger(1)
+
+        observer.assertNoErrors()
+        observer.assertValueAt(1) { it.transient }
+    }
+
+    @Test
+    fun `Fails when a feature's reducer throws`() {
+        val failingReducerCreator: TriggeredReducerCreator<Any, DummyState> = object : TriggeredReducerCreator<Any, DummyState> {
+            private val events: Subject<Any> = PublishSubject.create()
+            override fun trigger(input: Any) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.map {
+                Reducer<DummyState> { throw IllegalStateException("zip") }
+            }
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 23)))
+                .stateToModel { it }
+                .creators(setOf(failingReducerCreator))
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        failingReducerCreator.trigger(1)
+
+        observer.assertErrorMessage("zip")
+    }
+
+    @Test
+    fun `Engine resets transient property set in 1st reducer when emitting 2nd reducer`() {
+        val aReducerCreator: TriggeredReducerCreator<Any, DummyState> = object : TriggeredReducerCreator<Any, DummyState> {
+            private val events: Subject<Any> = PublishSubject.create()
+            override fun trigger(input: Any) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.flatMap { _ ->
+                Observable.just(
+                        Reducer<DummyState> { it.copy(transient = true) },
+                        Reducer { it }
+                )
+            }
+        }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(true, 1)))
+                .stateToModel { it }
+                .creators(setOf(aReducerCreator))
+                .transientResetter { it.copy(transient = false) }
+                .build()
+        val observer = sut.runWith(configuration).map(DummyState::transient).test()
+
+        aReducerCreator.trigger(1)
+
+        observer.assertValues(false, true, false)
+    }
+
+    @Test
+    fun `Re-emits the last emitted state for a new Subscriber`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 23)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .build()
+        val states = sut.runWith(configuration)
+        states.test()
+        addN.trigger(9)
+
+        val observer = states.test()
+
+        observer.assertValue(DummyState(false, 32))
+    }
+
+    @Test
+    fun `Applies a reducer emitted while a model is displayed after that model`() {
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .build()
+        val states = sut.runWith(configuration)
+        val observer = states.doOnNext { if (it.nonTransient == 1) addN.trigger(10) }.test()
+
+        addN.trigger(1)
+
+        observer.assertValues(DummyState(false, 0), DummyState(false, 1), DummyState(false, 11))
+    }
+
+    @Test
+    fun `Applies all reducers emitted concurrently by many threads`() {
+        val threadCount = 8
+        val eventCount = 10_000
+        val creators = (1..threadCount).map { addNCreator() }
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(creators)
+                .build()
+        val observer = sut.runWith(configuration).test()
+        val start = CountDownLatch(1)
+
+        val threads = creators.map { creator ->
+            thread {
+                start.await()
+                repeat(eventCount) { creator.trigger(1) }
+            }
+        }
+        start.countDown()
+        threads.forEach { it.join(TimeUnit.SECONDS.toMillis(10)) }
+
+        observer.assertValueCount(threadCount * eventCount + 1)
+        assertEquals(threadCount * eventCount, observer.values().last().nonTransient)
+    }
+
+    @Test
+    fun `Batching applies all reducers queued since the last emission in a single state`() {
+        val scheduler = TestScheduler()
+        val addN = addNCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 1)))
+                .stateToModel { it }
+                .creators(setOf(addN))
+                .batchingScheduler(scheduler)
+                .build()
+        val observer = sut.runWith(configuration).test()
+
+        addN.trigger(1)
+        addN.trigger(2)
+        addN.trigger(3)
+        scheduler.triggerActions()
+
+        observer.assertValues(DummyState(false, 1), DummyState(false, 7))
+    }
+
+    @Test
+    fun `Applies the queued reducers of a higher priority lane first`() {
+        val low = appendDigitCreator()
+        val high = appendDigitCreator()
+        val configuration = Configuration.builder<DummyState, DummyState>()
+                .store(MemoryStorage(DummyState(false, 0)))
+                .stateToModel { it }
+                .creators(listOf(low, high))
+                .lanes(mapOf<ReducerCreator<DummyState>, Lane>(high to Lane.of(1, 1)))
+                .build()
+        val observer = sut.runWith(configuration).doOnNext {
+            // Queued while this model is displayed.
+            if (it.nonTransient == 1) {
+                low.trigger(2)
+                low.trigger(3)
+                high.trigger(4)
+            }
+        }.test()
+
+        low.trigger(1)
+
+        assertEquals(listOf(0, 1, 14, 142, 1423), observer.values().map { it.nonTransient })
+    }
+
+    private fun appendDigitCreator(): TriggeredReducerCreator<Int, DummyState> {
+        return object : TriggeredReducerCreator<Int, DummyState> {
+            private val events: Subject<Int> = PublishSubject.create()
+            override fun trigger(input: Int) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.map { input ->
+                Reducer<DummyState> { it.copy(nonTransient = it.nonTransient * 10 + input) }
+            }
+        }
+    }
+
+    private fun addNCreator(): TriggeredReducerCreator<Int, DummyState> {
+        return object : TriggeredReducerCreator<Int, DummyState> {
+            private val events: Subject<Int> = PublishSubject.create()
+            override fun trigger(input: Int) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.map { input ->
+                Reducer<DummyState> { it.copy(nonTransient = input + it.nonTransient) }
+            }
+        }
+    }
+
+    private fun sameStateCreator(): TriggeredReducerCreator<Any, DummyState> {
+        return object : TriggeredReducerCreator<Any, DummyState> {
+            private val events: Subject<Any> = PublishSubject.create()
+            override fun trigger(input: Any) = events.onNext(input)
+            override fun reducers(): Observable<Reducer<DummyState>> = events.map {
+                Reducer<DummyState> { state -> state }
+            }
+        }
+    }
+}
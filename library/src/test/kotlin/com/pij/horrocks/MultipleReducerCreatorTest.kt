@@ -18,6 +18,7 @@ import com.pij.utils.Logger
 import com.pij.utils.SysoutLogger
 import io.reactivex.Observable
 import io.reactivex.observers.TestObserver
+import io.reactivex.subjects.PublishSubject
 import org.hamcrest.CoreMatchers.equalTo
 import org.hamcrest.MatcherAssert.assertThat
 import org.mockito.Mockito.*
@@ -103,5 +104,99 @@ class MultipleReducerCreatorTest {
 
         verify(loggerMock, times(2)).print(any(), contains("Emitting reducer"), any())
     }
-}
 
+    @Test
+    fun `Metrics count the interactions in flight`() {
+        val results = PublishSubject.create<Reducer<Int>>()
+        val metrics = InMemoryMetrics()
+        val sut = MultipleReducerCreator.builder<String, Int>(AsyncInteraction { results }).metrics(metrics).build()
+        sut.reducers().test()
+
+        sut.trigger("first")
+        sut.trigger("second")
+        assertThat(metrics.interactionsInFlight(), equalTo(2))
+
+        results.onComplete()
+        assertThat(metrics.interactionsInFlight(), equalTo(0))
+    }
+
+    @Test
+    fun `Merge at most processes a limited number of events at once`() {
+        val loads = mutableListOf<PublishSubject<Reducer<Int>>>()
+        val sut = MultipleReducerCreator.builder<String, Int>(AsyncInteraction { PublishSubject.create<Reducer<Int>>().also { loads.add(it) } })
+                .concurrency(Concurrency.mergeAtMost(2)).build()
+        sut.reducers().test()
+
+        repeat(3) { sut.trigger("event") }
+        assertThat(loads.map { it.hasObservers() }, equalTo(listOf(true, true, false)))
+
+        loads[0].onComplete()
+        assertThat(loads[2].hasObservers(), equalTo(true))
+    }
+
+    @Test
+    fun `Concat processes the events in order`() {
+        val loads = mutableMapOf<String, PublishSubject<Reducer<Int>>>()
+        val sut = MultipleReducerCreator.builder<String, Int>(AsyncInteraction { event -> PublishSubject.create<Reducer<Int>>().also { loads[event] = it } })
+                .concurrency(Concurrency.concat()).build()
+        val observer = sut.reducers().test()
+
+        sut.trigger("first")
+        sut.trigger("second")
+        assertThat(loads.keys, equalTo(setOf("first")))
+        loads.getValue("first").apply { onNext(Reducer { 1 }); onComplete() }
+        loads.getValue("second").apply { onNext(Reducer { 2 }); onComplete() }
+
+        assertThat(observer.values().map { it.reduce(0) }, equalTo(listOf(1, 2)))
+    }
+
+    @Test
+    fun `Switch latest cancels the interaction of the previous event`() {
+        val loads = mutableMapOf<String, PublishSubject<Reducer<Int>>>()
+        val sut = MultipleReducerCreator.builder<String, Int>(AsyncInteraction { event -> PublishSubject.create<Reducer<Int>>().also { loads[event] = it } })
+                .concurrency(Concurrency.switchLatest()).build()
+        val observer = sut.reducers().test()
+
+        sut.trigger("stale")
+        sut.trigger("latest")
+        loads.getValue("stale").onNext(Reducer { 1 })
+        loads.getValue("latest").onNext(Reducer { 2 })
+
+        assertThat(loads.getValue("stale").hasObservers(), equalTo(false))
+        assertThat(observer.values().map { it.reduce(0) }, equalTo(listOf(2)))
+    }
+
+    @Test
+    fun `Exhaust ignores the events received while busy`() {
+        val loads = mutableListOf<PublishSubject<Reducer<Int>>>()
+        val sut = MultipleReducerCreator.builder<String, Int>(AsyncInteraction { PublishSubject.create<Reducer<Int>>().also { loads.add(it) } })
+                .concurrency(Concurrency.exhaust()).build()
+        sut.reducers().test()
+
+        sut.trigger("first")
+        sut.trigger("ignored")
+        assertThat(loads.size, equalTo(1))
+
+        loads[0].onComplete()
+        sut.trigger("after")
+        assertThat(loads.size, equalTo(2))
+    }
+
+    @Test
+    fun `A lock-free creator delivers an event triggered during a delivery after it`() {
+        val delivered = mutableListOf<String>()
+        lateinit var sut: MultipleReducerCreator<String, Int>
+        sut = MultipleReducerCreator.builder<String, Int>(AsyncInteraction { event ->
+            if (event == "first") sut.trigger("second")
+            delivered.add(event)
+            Observable.empty()
+        })
+                .triggering(Triggering.lockFree())
+                .build()
+        sut.reducers().test()
+
+        sut.trigger("first")
+
+        assertThat(delivered, equalTo(listOf("first", "second")))
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import kotlin.test.*
+
+/**
+ * @author PierreJean
+ */
+class PersistentHashMapTest {
+
+    /**
+     * Keys with few distinct hash codes, to exercise collisions.
+     */
+    data class CollidingKey(val value: Int) {
+        override fun hashCode() = value % 7
+    }
+
+    @Test
+    fun `plus() adds entries`() {
+        var sut = PersistentHashMap.empty<Int, String>()
+
+        repeat(5000) { sut = sut.plus(it, "$it") }
+
+        assertEquals(5000, sut.size)
+        repeat(5000) { assertEquals("$it", sut[it]) }
+        assertEquals((0 until 5000).associateWith { "$it" }, sut)
+    }
+
+    @Test
+    fun `plus() replaces the value of an existing key and leaves the original unchanged`() {
+        val original = PersistentHashMap.of(mapOf(1 to "one", 2 to "two"))
+
+        val sut = original.plus(1, "uno")
+
+        assertEquals(mapOf(1 to "uno", 2 to "two"), sut)
+        assertEquals("one", original[1])
+    }
+
+    @Test
+    fun `plus() of the same value returns the same map`() {
+        val value = "one"
+        val original = PersistentHashMap.of(mapOf(1 to value))
+
+        assertSame(original, original.plus(1, value))
+    }
+
+    @Test
+    fun `minus() removes entries`() {
+        var sut = PersistentHashMap.of((0 until 5000).associateWith { "$it" })
+
+        for (key in 0 until 5000 step 2) sut = sut.minus(key)
+
+        assertEquals((1 until 5000 step 2).associateWith { "$it" }, sut)
+    }
+
+    @Test
+    fun `minus() of a missing key returns the same map`() {
+        val original = PersistentHashMap.of(mapOf(1 to "one"))
+
+        assertSame(original, original.minus(2))
+    }
+
+    @Test
+    fun `Colliding keys are all kept`() {
+        var sut = PersistentHashMap.empty<CollidingKey, Int>()
+
+        repeat(100) { sut = sut.plus(CollidingKey(it), it) }
+        for (key in 0 until 100 step 3) sut = sut.minus(CollidingKey(key))
+
+        val expected = (0 until 100).filter { it % 3 != 0 }.associateBy { CollidingKey(it) }
+        assertEquals(expected, sut)
+        assertEquals(expected.size, sut.size)
+    }
+
+    @Test
+    fun `get() of a missing key is null`() {
+        assertNull(PersistentHashMap.of(mapOf(1 to "one"))[2])
+        assertFalse(PersistentHashMap.of(mapOf(1 to "one")).containsKey(2))
+    }
+
+    @Test
+    fun `An updated map does not share its structure with the original`() {
+        val original = PersistentHashMap.of(mapOf(1 to "one"))
+
+        assertTrue(original.sharesStructureWith(original.plus(1, "one")))
+        assertFalse(original.sharesStructureWith(original.plus(1, "uno")))
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import kotlin.test.*
+
+/**
+ * @author PierreJean
+ */
+class PersistentVectorTest {
+
+    @Test
+    fun `plus() appends the elements in order`() {
+        var sut = PersistentVector.empty<Int>()
+
+        repeat(2000) { sut = sut.plus(it) }
+
+        assertEquals((0 until 2000).toList(), sut)
+    }
+
+    @Test
+    fun `of() builds the same list as repeated plus()`() {
+        for (size in listOf(0, 1, 31, 32, 33, 1024, 1056, 1057, 33000)) {
+            var expected = PersistentVector.empty<Int>()
+            repeat(size) { expected = expected.plus(it) }
+
+            val sut = PersistentVector.of((0 until size).toList())
+
+            assertEquals(expected, sut)
+            assertEquals((0 until size).toList(), sut.plus(-1).minusLast())
+        }
+    }
+
+    @Test
+    fun `with() replaces an element and leaves the original unchanged`() {
+        val original = PersistentVector.of((0 until 50000).toList())
+
+        val sut = original.with(25000, -1)
+
+        assertEquals(-1, sut[25000])
+        assertEquals(25000, original[25000])
+        assertEquals(50000, sut.size)
+    }
+
+    @Test
+    fun `with() at the size appends`() {
+        val sut = PersistentVector.of(listOf(1, 2)).with(2, 3)
+
+        assertEquals(listOf(1, 2, 3), sut)
+    }
+
+    @Test
+    fun `with() out of bounds fails`() {
+        assertFailsWith<IndexOutOfBoundsException> { PersistentVector.of(listOf(1, 2)).with(3, 3) }
+    }
+
+    @Test
+    fun `minusLast() removes the elements in reverse order`() {
+        var sut = PersistentVector.of((0 until 2000).toList())
+
+        for (size in 1999 downTo 0) {
+            sut = sut.minusLast()
+            assertEquals(size, sut.size)
+            if (size > 0) assertEquals(size - 1, sut[size - 1])
+        }
+        assertEquals(emptyList<Int>(), sut)
+    }
+
+    @Test
+    fun `minusLast() on an empty vector fails`() {
+        assertFailsWith<IllegalStateException> { PersistentVector.empty<Int>().minusLast() }
+    }
+
+    @Test
+    fun `A vector is read-only`() {
+        assertFailsWith<UnsupportedOperationException> { (PersistentVector.of(listOf(1)) as MutableList<Int>).add(2) }
+    }
+
+    @Test
+    fun `A vector equals a list with the same elements`() {
+        assertEquals(listOf(1, 2, 3), PersistentVector.of(listOf(1, 2, 3)))
+        assertEquals(listOf(1, 2, 3).hashCode(), PersistentVector.of(listOf(1, 2, 3)).hashCode())
+    }
+
+    @Test
+    fun `An unchanged vector shares its structure`() {
+        val original = PersistentVector.of((0 until 100).toList())
+
+        assertTrue(original.sharesStructureWith(PersistentVector.of(original)))
+    }
+
+    @Test
+    fun `Equal vectors built separately do not share their structure`() {
+        val left = PersistentVector.of((0 until 100).toList())
+        val right = PersistentVector.of((0 until 100).toList())
+
+        assertFalse(left.sharesStructureWith(right))
+        assertEquals(left, right)
+    }
+}
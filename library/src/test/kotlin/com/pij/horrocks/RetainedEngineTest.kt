@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import io.reactivex.Observable
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.PublishSubject
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/**
+ * @author PierreJean
+ */
+class RetainedEngineTest {
+
+    private class CountingStorage(private var state: Int) : Storage<Int> {
+        var loads = 0
+
+        override fun load(): Int {
+            loads++
+            return state
+        }
+
+        override fun save(state: Int) {
+            this.state = state
+        }
+    }
+
+    private val scheduler = TestScheduler()
+    private val storage = CountingStorage(0)
+    private val events = PublishSubject.create<Int>()
+    private var subscriptions = 0
+    private val adder = object : ReducerCreator<Int> {
+        override fun reducers(): Observable<Reducer<Int>> = events
+                .doOnSubscribe { subscriptions++ }
+                .map { amount -> Reducer<Int> { it + amount } }
+    }
+    private val configuration = Configuration.builder<Int, Int>()
+            .store(storage)
+            .creators(listOf(adder))
+            .stateToModel { it }
+            .build()
+    private val sut = RetainedEngine(DefaultEngine<Int, Int>(LevelLogger.OFF), 5, TimeUnit.SECONDS, scheduler)
+
+    @Test
+    fun `A view taken again within the grace period gets the last model`() {
+        sut.runWith(configuration).test().dispose()
+        events.onNext(3)
+
+        val observer = sut.runWith(configuration).test()
+
+        observer.assertValues(3)
+    }
+
+    @Test
+    fun `A view taken again within the grace period neither reloads the state nor restarts the creators`() {
+        sut.runWith(configuration).test().dispose()
+        scheduler.advanceTimeBy(4, TimeUnit.SECONDS)
+
+        sut.runWith(configuration).test()
+
+        assertEquals(1, storage.loads)
+        assertEquals(1, subscriptions)
+    }
+
+    @Test
+    fun `The run ends once the grace period elapses without subscriber`() {
+        sut.runWith(configuration).test().dispose()
+
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS)
+
+        assertEquals(0, sut.runCount())
+        assertEquals(false, events.hasObservers())
+    }
+
+    @Test
+    fun `A view taken after the grace period starts a new run`() {
+        sut.runWith(configuration).test().dispose()
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS)
+
+        sut.runWith(configuration).test()
+
+        assertEquals(2, storage.loads)
+        assertEquals(2, subscriptions)
+    }
+
+    @Test
+    fun `Subscriptions with the same configuration share the run`() {
+        sut.runWith(configuration).test()
+        sut.runWith(configuration).test()
+
+        assertEquals(1, storage.loads)
+        assertEquals(1, subscriptions)
+        assertEquals(1, sut.runCount())
+    }
+
+    @Test
+    fun `A run that is not subscribed to is not retained`() {
+        sut.runWith(configuration)
+
+        assertEquals(0, sut.runCount())
+        assertEquals(0, storage.loads)
+    }
+
+    @Test
+    fun `A stale run subscribed to again joins the current run`() {
+        val stale = sut.runWith(configuration)
+        stale.test().dispose()
+        scheduler.advanceTimeBy(5, TimeUnit.SECONDS)
+        sut.runWith(configuration).test()
+
+        stale.test()
+
+        assertEquals(2, storage.loads)
+        assertEquals(2, subscriptions)
+        assertEquals(1, sut.runCount())
+    }
+
+    @Test
+    fun `A terminated run is not retained`() {
+        sut.runWith(configuration).test()
+
+        events.onError(IllegalStateException())
+
+        assertEquals(0, sut.runCount())
+    }
+}
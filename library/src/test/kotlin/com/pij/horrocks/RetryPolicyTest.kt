@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import io.reactivex.Observable
+import io.reactivex.observers.TestObserver
+import io.reactivex.schedulers.TestScheduler
+import java.util.concurrent.TimeUnit.MICROSECONDS
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import java.util.concurrent.TimeUnit.SECONDS
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+/**
+ * @author PierreJean
+ */
+class RetryPolicyTest {
+
+    private val scheduler = TestScheduler()
+    private var subscriptions = 0
+    private val failing: Observable<Reducer<String>> = Observable.defer {
+        subscriptions++
+        Observable.error<Reducer<String>>(IllegalStateException("Expected"))
+    }
+    private val errorReducerFactory = ErrorReducerFactory<String> { error ->
+        Reducer { if (error is RepeatedFailureException) "failed ${error.count()} times" else "failed" }
+    }
+    private val backoff = RetryPolicy.exponentialBackoff(100, 1000, MILLISECONDS, scheduler).withJitter(0.0)
+
+    private fun TestObserver<Reducer<String>>.states() = values().map { it.reduce("") }
+
+    @Test
+    fun `Never emits an error reducer then completes`() {
+        val observer = RetryPolicy.never().apply(failing, errorReducerFactory).test()
+
+        assertEquals(listOf("failed"), observer.states())
+        observer.assertComplete()
+        assertEquals(1, subscriptions)
+    }
+
+    @Test
+    fun `Backoff subscribes again after delays that double`() {
+        backoff.apply(failing, errorReducerFactory).test()
+
+        scheduler.advanceTimeBy(100, MILLISECONDS)
+        assertEquals(2, subscriptions)
+        scheduler.advanceTimeBy(199, MILLISECONDS)
+        assertEquals(2, subscriptions)
+        scheduler.advanceTimeBy(1, MILLISECONDS)
+        assertEquals(3, subscriptions)
+    }
+
+    @Test
+    fun `Backoff only emits an error reducer for the first failure of a series`() {
+        val observer = backoff.apply(failing, errorReducerFactory).test()
+
+        scheduler.advanceTimeBy(10, SECONDS)
+
+        assertEquals(listOf("failed"), observer.states())
+        observer.assertNotComplete()
+    }
+
+    @Test
+    fun `Backoff delays are capped`() {
+        assertEquals(MILLISECONDS.toNanos(100), backoff.delayNanos(1))
+        assertEquals(MILLISECONDS.toNanos(800), backoff.delayNanos(4))
+        assertEquals(MILLISECONDS.toNanos(1000), backoff.delayNanos(5))
+        assertEquals(MILLISECONDS.toNanos(1000), backoff.delayNanos(1000))
+    }
+
+    @Test
+    fun `Backoff delays shorter than a millisecond are kept`() {
+        val fine = RetryPolicy.exponentialBackoff(500, 1000, MICROSECONDS, scheduler).withJitter(0.0)
+
+        assertEquals(MICROSECONDS.toNanos(500), fine.delayNanos(1))
+        assertEquals(MICROSECONDS.toNanos(1000), fine.delayNanos(2))
+    }
+
+    @Test
+    fun `A circuit breaker needs positive durations`() {
+        assertFailsWith<IllegalArgumentException> { backoff.withCircuitBreaker(3, 0, 1, SECONDS) }
+        assertFailsWith<IllegalArgumentException> { backoff.withCircuitBreaker(3, 1, 0, SECONDS) }
+    }
+
+    @Test
+    fun `Jitter shortens delays by up to its ratio`() {
+        val jittered = backoff.withJitter(0.5)
+
+        repeat(100) {
+            val delay = jittered.delayNanos(1)
+            assertTrue(delay in MILLISECONDS.toNanos(50)..MILLISECONDS.toNanos(100), "$delay")
+        }
+    }
+
+    @Test
+    fun `A reducer resets the backoff`() {
+        var attempts = 0
+        val failingEveryOtherTime = Observable.defer {
+            attempts++
+            if (attempts % 2 == 1) Observable.error(IllegalStateException("Expected"))
+            else Observable.just(Reducer<String> { "ok" }).concatWith(Observable.error(IllegalStateException("Expected")))
+        }
+        val observer = backoff.apply(failingEveryOtherTime, errorReducerFactory).test()
+
+        scheduler.advanceTimeBy(100, MILLISECONDS)
+        scheduler.advanceTimeBy(100, MILLISECONDS)
+
+        assertEquals(3, attempts)
+        assertEquals(listOf("failed", "ok", "failed"), observer.states())
+    }
+
+    @Test
+    fun `The circuit breaker opens after too many failures within its window`() {
+        val observer = backoff.withCircuitBreaker(3, 1, 5, SECONDS).apply(failing, errorReducerFactory).test()
+
+        scheduler.advanceTimeBy(300, MILLISECONDS)
+        assertEquals(3, subscriptions)
+        scheduler.advanceTimeBy(4, SECONDS)
+
+        assertEquals(3, subscriptions)
+        assertEquals(listOf("failed", "failed 3 times"), observer.states())
+    }
+
+    @Test
+    fun `A failure once the circuit breaker closes opens it again`() {
+        val observer = backoff.withCircuitBreaker(3, 1, 5, SECONDS).apply(failing, errorReducerFactory).test()
+        scheduler.advanceTimeBy(300, MILLISECONDS)
+
+        scheduler.advanceTimeBy(5, SECONDS)
+        assertEquals(4, subscriptions)
+        scheduler.advanceTimeBy(4, SECONDS)
+
+        assertEquals(4, subscriptions)
+        assertEquals(listOf("failed", "failed 3 times", "failed 4 times"), observer.states())
+    }
+}
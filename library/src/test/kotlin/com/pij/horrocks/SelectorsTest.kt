@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertSame
+
+/**
+ * @author PierreJean
+ */
+class SelectorsTest {
+
+    data class DummyState(val items: List<String>, val filter: String, val flag: Boolean)
+
+    private var calculations = 0
+
+    @Test
+    fun `memoize() does not recalculate for the same input instance`() {
+        val sut = Selectors.memoize<DummyState, Int> { calculations++; it.items.size }
+        val state = DummyState(listOf("a", "b"), "", false)
+
+        sut.select(state)
+        sut.select(state)
+
+        assertEquals(1, calculations)
+    }
+
+    @Test
+    fun `memoize() recalculates for an equal but different input instance`() {
+        val sut = Selectors.memoize<DummyState, Int> { calculations++; it.items.size }
+
+        sut.select(DummyState(listOf("a", "b"), "", false))
+        sut.select(DummyState(listOf("a", "b"), "", false))
+
+        assertEquals(2, calculations)
+    }
+
+    @Test
+    fun `combine() does not recombine when its inputs are the same instances`() {
+        val items = listOf("a", "b", "ab")
+        val sut = Selectors.combine<DummyState, List<String>, String, List<String>>(
+                Selector { it.items }, Selector { it.filter },
+                Selectors.Combiner2 { list, filter -> calculations++; list.filter { it.contains(filter) } })
+
+        val first = sut.select(DummyState(items, "a", false))
+        val second = sut.select(DummyState(items, "a", true))
+
+        assertEquals(1, calculations)
+        assertSame(first, second)
+    }
+
+    @Test
+    fun `combine() recombines when one of its inputs changes`() {
+        val items = listOf("a", "b", "ab")
+        val sut = Selectors.combine<DummyState, List<String>, String, List<String>>(
+                Selector { it.items }, Selector { it.filter },
+                Selectors.Combiner2 { list, filter -> calculations++; list.filter { it.contains(filter) } })
+
+        sut.select(DummyState(items, "a", false))
+        val result = sut.select(DummyState(items, "b", false))
+
+        assertEquals(2, calculations)
+        assertEquals(listOf("b", "ab"), result)
+    }
+
+    @Test
+    fun `combine() of 3 selectors only recombines changed inputs`() {
+        val items = listOf("a", "b")
+        val sut = Selectors.combine<DummyState, List<String>, String, Boolean, String>(
+                Selector { it.items }, Selector { it.filter }, Selector { it.flag },
+                Selectors.Combiner3 { list, filter, flag -> calculations++; "$list $filter $flag" })
+
+        sut.select(DummyState(items, "", false))
+        sut.select(DummyState(items, "", false))
+        sut.select(DummyState(items, "", true))
+
+        assertEquals(2, calculations)
+    }
+
+    @Test
+    fun `converter() converts with the selector`() {
+        val sut = Selectors.converter(Selectors.memoize<DummyState, Int> { it.items.size })
+
+        assertEquals(2, sut.convert(DummyState(listOf("a", "b"), "", false)))
+    }
+}
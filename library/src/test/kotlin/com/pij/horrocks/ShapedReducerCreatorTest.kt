@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import io.reactivex.observers.TestObserver
+import io.reactivex.schedulers.TestScheduler
+import java.util.concurrent.TimeUnit.MILLISECONDS
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/**
+ * @author PierreJean
+ */
+class ShapedReducerCreatorTest {
+
+    private val scheduler = TestScheduler()
+    private val creator = SingleReducerCreator<String, String>(Interaction { event -> Reducer { event } }, LevelLogger.OFF)
+
+    private fun TestObserver<Reducer<String>>.events() = values().map { it.reduce("") }
+
+    @Test
+    fun `Without shaper, every event reaches the creator`() {
+        val sut = ShapedReducerCreator(creator)
+        val observer = sut.reducers().test()
+
+        sut.trigger("a")
+        sut.trigger("a")
+
+        assertEquals(listOf("a", "a"), observer.events())
+    }
+
+    @Test
+    fun `An event reaches the creator once however many observe the reducers`() {
+        val sut = ShapedReducerCreator(creator, EventShapers.distinct())
+        val first = sut.reducers().test()
+        val second = sut.reducers().test()
+
+        sut.trigger("a")
+
+        assertEquals(listOf("a"), first.events())
+        assertEquals(listOf("a"), second.events())
+    }
+
+    @Test
+    fun `Distinct drops an event equal to the previous one`() {
+        val sut = ShapedReducerCreator(creator, EventShapers.distinct())
+        val observer = sut.reducers().test()
+
+        listOf("a", "a", "b", "a").forEach { sut.trigger(it) }
+
+        assertEquals(listOf("a", "b", "a"), observer.events())
+    }
+
+    @Test
+    fun `Debounce only passes the last event of a burst`() {
+        val sut = ShapedReducerCreator(creator, EventShapers.debounce(100, MILLISECONDS, scheduler))
+        val observer = sut.reducers().test()
+
+        sut.trigger("a")
+        scheduler.advanceTimeBy(50, MILLISECONDS)
+        sut.trigger("ab")
+        scheduler.advanceTimeBy(100, MILLISECONDS)
+
+        assertEquals(listOf("ab"), observer.events())
+    }
+
+    @Test
+    fun `Throttle first passes the first event of a period`() {
+        val sut = ShapedReducerCreator(creator, EventShapers.throttleFirst(100, MILLISECONDS, scheduler))
+        val observer = sut.reducers().test()
+
+        sut.trigger("tap")
+        sut.trigger("ignored")
+        scheduler.advanceTimeBy(150, MILLISECONDS)
+        sut.trigger("tap again")
+
+        assertEquals(listOf("tap", "tap again"), observer.events())
+    }
+
+    @Test
+    fun `Throttle last passes the last event of a period`() {
+        val sut = ShapedReducerCreator(creator, EventShapers.throttleLast(100, MILLISECONDS, scheduler))
+        val observer = sut.reducers().test()
+
+        sut.trigger("ignored")
+        sut.trigger("last")
+        scheduler.advanceTimeBy(100, MILLISECONDS)
+
+        assertEquals(listOf("last"), observer.events())
+    }
+
+    @Test
+    fun `Coalesce combines the events of a window into one`() {
+        val sut = ShapedReducerCreator(creator,
+                EventShapers.coalesce(100, MILLISECONDS, scheduler, EventShapers.Coalescer { earlier, later -> earlier + later }))
+        val observer = sut.reducers().test()
+
+        sut.trigger("a")
+        scheduler.advanceTimeBy(50, MILLISECONDS)
+        sut.trigger("b")
+        scheduler.advanceTimeBy(50, MILLISECONDS)
+        sut.trigger("c")
+        scheduler.advanceTimeBy(100, MILLISECONDS)
+
+        assertEquals(listOf("ab", "c"), observer.events())
+    }
+
+    @Test
+    fun `Shapers apply in order`() {
+        val sut = ShapedReducerCreator(creator,
+                EventShapers.distinct(), EventShapers.debounce(100, MILLISECONDS, scheduler))
+        val observer = sut.reducers().test()
+
+        sut.trigger("a")
+        scheduler.advanceTimeBy(100, MILLISECONDS)
+        sut.trigger("a")
+        scheduler.advanceTimeBy(100, MILLISECONDS)
+
+        assertEquals(listOf("a"), observer.events())
+    }
+}
@@ -51,6 +51,40 @@ class SingleReducerCreatorTest {
         observer.assertNotComplete()
     }
 
+    @Test
+    fun `By default, an event triggered while another is processed is processed recursively`() {
+        lateinit var sut: SingleReducerCreator<Int, Int>
+        val processed = mutableListOf<String>()
+        sut = SingleReducerCreator(Interaction { event ->
+            processed.add("start $event")
+            if (event == 1) sut.trigger(2)
+            processed.add("end $event")
+            Reducer { event }
+        }, LevelLogger.OFF)
+        sut.reducers().test()
+
+        sut.trigger(1)
+
+        assertThat(processed, equalTo(listOf("start 1", "start 2", "end 2", "end 1")))
+    }
+
+    @Test
+    fun `With lock-free triggering, an event triggered while another is processed is processed after it`() {
+        lateinit var sut: SingleReducerCreator<Int, Int>
+        val processed = mutableListOf<String>()
+        sut = SingleReducerCreator(Interaction { event ->
+            processed.add("start $event")
+            if (event == 1) sut.trigger(2)
+            processed.add("end $event")
+            Reducer { event }
+        }, LevelLogger.OFF, Triggering.lockFree())
+        sut.reducers().test()
+
+        sut.trigger(1)
+
+        assertThat(processed, equalTo(listOf("start 1", "end 1", "start 2", "end 2")))
+    }
+
     @Test
     fun `reducer() emits 2 Reducers if 2 events are triggered`() {
         val sut = SingleReducerCreator<String, Int>(Interaction { Reducer { 0 } }, SysoutLogger())
@@ -95,5 +129,15 @@ class SingleReducerCreatorTest {
 
         Mockito.verify(loggerMock).print(any(), contains("Emitting reducer"), any())
     }
-}
 
+    @Test
+    fun `Does not log events below the logger's threshold`() {
+        val loggerMock = Mockito.mock(Logger::class.java)
+        val sut = SingleReducerCreator<String, Int>(Interaction { Reducer { 0 } }, LevelLogger.create(loggerMock, LogLevel.DEBUG))
+        sut.reducers().test()
+
+        sut.trigger("something")
+
+        Mockito.verifyZeroInteractions(loggerMock)
+    }
+}
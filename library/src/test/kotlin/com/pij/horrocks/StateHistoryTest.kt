@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+/**
+ * @author PierreJean
+ */
+class StateHistoryTest {
+
+    private val origin = object : ReducerCreator<Int> {
+        override fun reducers() = throw UnsupportedOperationException()
+    }
+    private val sut = StateHistory<Int>(3)
+
+    @Test
+    fun `Keeps the states recorded, oldest first`() {
+        sut.record(null, 1)
+        sut.record(origin, 2)
+
+        assertEquals(listOf(1, 2), sut.entries().map { it.state() })
+    }
+
+    @Test
+    fun `Keeps the origin of each state`() {
+        sut.record(null, 1)
+        sut.record(origin, 2)
+
+        assertNull(sut.entries()[0].origin())
+        assertEquals(origin, sut.entries()[1].origin())
+    }
+
+    @Test
+    fun `Once full, a new state replaces the oldest one`() {
+        (1..5).forEach { sut.record(origin, it) }
+
+        assertEquals(listOf(3, 4, 5), sut.entries().map { it.state() })
+    }
+
+    @Test
+    fun `A recording reducer records the state it produces`() {
+        val reducer = sut.recording(origin, Reducer { it + 1 })
+
+        reducer.reduce(1)
+
+        assertEquals(listOf(HistoryEntry.create(origin, 2)), sut.entries())
+    }
+
+    @Test
+    fun `The reducers of the history itself are not recorded`() {
+        val reducer = sut.recording(sut, Reducer { it + 1 })
+
+        reducer.reduce(1)
+
+        assertEquals(0, sut.size())
+    }
+
+    @Test
+    fun `Jump emits a reducer to the state of the entry`() {
+        (1..5).forEach { sut.record(origin, it) }
+        val observer = sut.reducers().test()
+
+        sut.jumpTo(1)
+
+        assertEquals(listOf(4), observer.values().map { it.reduce(0) })
+    }
+
+    @Test
+    fun `Replay emits reducers to the states from the entry to the latest`() {
+        (1..5).forEach { sut.record(origin, it) }
+        val observer = sut.reducers().test()
+
+        sut.replayFrom(1)
+
+        assertEquals(listOf(4, 5), observer.values().map { it.reduce(0) })
+    }
+
+    @Test
+    fun `Jump to an entry out of the history fails`() {
+        sut.record(origin, 1)
+
+        assertFailsWith<IndexOutOfBoundsException> { sut.jumpTo(1) }
+    }
+}
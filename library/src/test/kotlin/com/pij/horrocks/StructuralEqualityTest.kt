@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import kotlin.test.Test
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+/**
+ * @author PierreJean
+ */
+class StructuralEqualityTest {
+
+    data class DummyState(val items: PersistentVector<String>, val flag: Boolean)
+
+    private val items = PersistentVector.of(listOf("a", "b"))
+
+    @Test
+    fun `Vectors sharing their structure are the same`() {
+        assertTrue(StructuralEquality.same(items, PersistentVector.of(items)))
+    }
+
+    @Test
+    fun `Equal vectors built separately are not the same`() {
+        assertFalse(StructuralEquality.same(items, PersistentVector.of(listOf("a", "b"))))
+    }
+
+    @Test
+    fun `States whose selected properties are the same are equal`() {
+        val sut = StructuralEquality.onProperties<DummyState>(Selector { it.items }, Selector { it.flag })
+
+        assertTrue(sut.equal(DummyState(items, true), DummyState(items, true)))
+    }
+
+    @Test
+    fun `States with a different property are not equal`() {
+        val sut = StructuralEquality.onProperties<DummyState>(Selector { it.items }, Selector { it.flag })
+
+        assertFalse(sut.equal(DummyState(items, true), DummyState(items.with(0, "z"), true)))
+        assertFalse(sut.equal(DummyState(items, true), DummyState(items, false)))
+    }
+}
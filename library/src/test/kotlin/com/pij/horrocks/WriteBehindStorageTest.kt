@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018, Chiswick Forest
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.pij.horrocks
+
+import io.reactivex.schedulers.TestScheduler
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+/**
+ * @author PierreJean
+ */
+class WriteBehindStorageTest {
+
+    private val scheduler = TestScheduler()
+    private val delegate = object : Storage<String> {
+        val saved = mutableListOf<String>()
+        override fun load() = "initial"
+        override fun save(state: String) {
+            saved.add(state)
+        }
+    }
+    private val sut = WriteBehindStorage(delegate, scheduler)
+
+    @Test
+    fun `Load provides the delegate's state before any save`() {
+        assertEquals("initial", sut.load())
+    }
+
+    @Test
+    fun `Save does not write until the scheduler runs`() {
+        sut.save("state")
+
+        assertEquals(emptyList<String>(), delegate.saved)
+    }
+
+    @Test
+    fun `Load provides the state saved but not written yet`() {
+        sut.save("state")
+
+        assertEquals("state", sut.load())
+    }
+
+    @Test
+    fun `Saves before a write only write the latest state`() {
+        sut.save("first")
+        sut.save("second")
+        sut.save("third")
+
+        scheduler.triggerActions()
+
+        assertEquals(listOf("third"), delegate.saved)
+    }
+
+    @Test
+    fun `A save after a write is written too`() {
+        sut.save("first")
+        scheduler.triggerActions()
+
+        sut.save("second")
+        scheduler.triggerActions()
+
+        assertEquals(listOf("first", "second"), delegate.saved)
+    }
+
+    @Test
+    fun `Flush completes once the pending state is written`() {
+        sut.save("state")
+
+        val observer = sut.flush().test()
+
+        observer.assertNotComplete()
+        scheduler.triggerActions()
+        observer.assertComplete()
+        assertEquals(listOf("state"), delegate.saved)
+    }
+
+    @Test
+    fun `Flush now writes the pending state immediately`() {
+        sut.save("state")
+
+        sut.flushNow()
+
+        assertEquals(listOf("state"), delegate.saved)
+    }
+
+    @Test
+    fun `A state flushed now is not written again`() {
+        sut.save("state")
+        sut.flushNow()
+
+        scheduler.triggerActions()
+
+        assertEquals(listOf("state"), delegate.saved)
+    }
+}